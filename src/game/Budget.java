@@ -0,0 +1,80 @@
+package game;
+
+/**
+ * An instance limits the resources a solver may use in one phase of a game:
+ * wall-clock time, CPU time of the thread running the solver, and the number
+ * of moves. A limit of 0 means no limit.
+ * <p>
+ * A phase with a time limit runs on a thread of its own, which GameState
+ * interrupts once a limit has passed; from then on every call the solver makes
+ * into the game throws, so the phase ends at the solver's next call.
+ */
+public final class Budget {
+    /**
+     * The budget that limits nothing.
+     */
+    public static final Budget UNLIMITED = new Budget(0, 0, 0);
+
+    private final long wallMillis;
+    private final long cpuMillis;
+    private final int maxMoves;
+
+    /**
+     * Constructor: a budget of wallMillis ms of wall-clock time, cpuMillis ms of
+     * CPU time and maxMoves moves, where 0 means no limit.
+     * Throw an IllegalArgumentException if any limit is negative.
+     */
+    public Budget(long wallMillis, long cpuMillis, int maxMoves) {
+        if (wallMillis < 0 || cpuMillis < 0 || maxMoves < 0) {
+            throw new IllegalArgumentException("Budget: limits must not be negative");
+        }
+        this.wallMillis = wallMillis;
+        this.cpuMillis = cpuMillis;
+        this.maxMoves = maxMoves;
+    }
+
+    /**
+     * Return the wall-clock limit in ms (0: no limit).
+     */
+    public long getWallMillis() {
+        return wallMillis;
+    }
+
+    /**
+     * Return the CPU time limit in ms (0: no limit).
+     */
+    public long getCpuMillis() {
+        return cpuMillis;
+    }
+
+    /**
+     * Return the maximum number of moves (0: no limit).
+     */
+    public int getMaxMoves() {
+        return maxMoves;
+    }
+
+    /**
+     * Return true iff this budget limits wall-clock or CPU time.
+     */
+    public boolean limitsTime() {
+        return wallMillis > 0 || cpuMillis > 0;
+    }
+
+    /**
+     * Return true iff a phase that has made moves moves may make another.
+     */
+    /* package */ boolean allowsMove(int moves) {
+        return maxMoves == 0 || moves < maxMoves;
+    }
+
+    @Override
+    public String toString() {
+        return "Budget(wall=" + limit(wallMillis, "ms") + ", cpu=" + limit(cpuMillis, "ms")
+                + ", moves=" + limit(maxMoves, "") + ")";
+    }
+
+    private static String limit(long value, String unit) {
+        return (value == 0 ? "unlimited" : value + unit);
+    }
+}
@@ -1,63 +1,89 @@
 package game;
 
-import java.util.ArrayDeque;
+import java.io.IOException;
+import java.io.StringReader;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
-import java.util.Queue;
 import java.util.Random;
 import java.util.Set;
-import java.util.function.Supplier;
+import java.util.function.IntSupplier;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * An instance represents a Cavern that the explorer can navigate through.
  * The cavern is set up as a grid of Tile objects with a weighted graph of all non-floor tiles.
  * There is an entrance to the cavern and a target location (which may also be the entrance).
+ * <p>
+ * Node ids are allocated per cavern and are dense: the open nodes of the graph have
+ * ids 0..numOpenTiles()-1 and the walls take the ids after that, so any id can be
+ * used directly as an array index.
+ * <p>
+ * The tiles and graph are held by a CavernStorage: Node, Tile and Edge objects
+ * on the heap for generated caverns and those read from files, or a
+ * memory-mapped file for caverns opened with MappedCavern, which keeps only
+ * the gold taken on the heap.
  */
 public class Cavern {
 
     public static final int MAX_EDGE_WEIGHT = 15;
     public static final int MAX_GOLD_VALUE = 1000;
     public static final int TASTY_VALUE = 5000;
-    private static final double DENSITY = 0.6;
     private static final double GOLD_PROBABILITY = 0.33;
     private final int rows;
     private final int cols;
-    private final Set<Node> graph;
+    private final CavernStorage storage;
     private final Node entrance;
     private final Node target;
-    private final Node[][] tiles;
+    private final ShortestPathCache pathCache = new ShortestPathCache(ShortestPathCache.DEFAULT_BUDGET);
+    private GoldIndex goldIndex;    // built on first use
+    private DeltaStepping parallelSearch; // built on first use, for large caverns only
+    private volatile int parallelThreshold = DeltaStepping.PARALLEL_THRESHOLD;
+    private int generationAttempts = 1; // the number of caverns generated to get this one
+    private volatile ShortestPathOracle pathOracle = new TreeOracle();
 
     /**
-     * Constructor: an instance of size (rws, cls) .
-     * Use rand as a source of randomness for the cavern generation.
-     * Use {@code edgeWeightGenerator} and {@code goldGenerator} to generate edge weights and gold values.
-     * Precondition: {@code targetType} must be either {@code Tile.Type.ORB} or {@code Tile.Type.ENTRANCE}.
+     * Constructor: an instance built from layout, using {@code edgeWeightGenerator}
+     * to generate edge weights. The open nodes get the ids of the layout and
+     * the walls the ids after them, in row-major order.
+     * Precondition: layout has an entrance and a target.
      */
-    private Cavern(int rws,
-                   int cls,
-                   Random rand,
-                   Supplier<Integer> edgeWeightGenerator,
-                   Supplier<Integer> goldGenerator,
-                   Tile.Type targetType) {
-        rows = rws;
-        cols = cls;
-
-        graph = generateGraph(rand, targetType, goldGenerator);
+    private Cavern(CavernLayout layout, IntSupplier edgeWeightGenerator) {
+        this(build(layout, edgeWeightGenerator));
+    }
 
-        entrance = graph.stream().filter((n) -> n.getTile().getType() == Tile.Type.ENTRANCE).findAny().get();
+    /**
+     * Return the storage of the cavern built from layout, using
+     * {@code edgeWeightGenerator} to generate edge weights (see the constructor).
+     */
+    private static CavernStorage build(CavernLayout layout, IntSupplier edgeWeightGenerator) {
+        int rows = layout.rows;
+        int cols = layout.cols;
+
+        NodeIdAllocator ids = new NodeIdAllocator();
+        Node[] openNodes = new Node[layout.size()];
+        for (int i = 0; i < openNodes.length; i++) {
+            int cell = layout.getCell(i);
+            openNodes[i] = new Node(ids, new Tile(cell / cols, cell % cols, layout.getGold(i), layout.getType(i)));
+        }
+        Node entrance = openNodes[layout.getEntrance()];
+        Node target = openNodes[layout.getTarget()];
 
-        target = graph.stream().filter((n) -> n.getTile().getType() == targetType).findAny().get();
+        // Fill the set with the entrance first, then the other nodes in id order, as
+        // it always has been filled, so that it iterates in the same order.
+        List<Node> nodes = new ArrayList<>(openNodes.length);
+        nodes.add(entrance);
+        for (Node n : openNodes) {
+            if (n != entrance) {
+                nodes.add(n);
+            }
+        }
+        Set<Node> graph = new HashSet<>(nodes);
 
         // Set tiles for the floor and then add walls wherever floor is missing.
-        tiles = new Node[rows][cols];
-        for (Node node : graph) {
+        Node[][] tiles = new Node[rows][cols];
+        for (Node node : openNodes) {
             Tile t = node.getTile();
             tiles[t.getRow()][t.getColumn()] = node;
         }
@@ -65,11 +91,12 @@ public class Cavern {
         for (int i = 0; i < rows; i++) {
             for (int j = 0; j < cols; j++) {
                 if (tiles[i][j] == null) {
-                    tiles[i][j] = new Node(new Tile(i, j, 0, Tile.Type.WALL));
+                    tiles[i][j] = new Node(ids, new Tile(i, j, 0, Tile.Type.WALL));
                 }
             }
         }
         createEdges(tiles, edgeWeightGenerator);
+        return new HeapCavernStorage(graph, tiles, entrance, target);
     }
 
     /**
@@ -80,16 +107,21 @@ public class Cavern {
      * {@code givenTiles} and edges are along the grid).
      * 2. {@code trgt} is a node in {@code givenGraph}.
      */
-    private Cavern(Set<Node> givenGraph, Node[][] givenTiles, Node trgt) {
-        tiles = givenTiles;
-        rows = tiles.length;
-        cols = tiles[0].length;
-
-        graph = Collections.unmodifiableSet(givenGraph);
-
-        entrance = graph.stream().filter((n) -> n.getTile().getType() == Tile.Type.ENTRANCE).findAny().get();
+    /* package */ Cavern(Set<Node> givenGraph, Node[][] givenTiles, Node trgt) {
+        this(new HeapCavernStorage(givenGraph, givenTiles,
+                givenGraph.stream().filter((n) -> n.getTile().getType() == Tile.Type.ENTRANCE).findAny().get(),
+                trgt));
+    }
 
-        target = trgt;
+    /**
+     * Constructor: an instance whose tiles and graph are held by s.
+     */
+    /* package */ Cavern(CavernStorage s) {
+        storage = s;
+        rows = s.getRowCount();
+        cols = s.getColumnCount();
+        entrance = s.getEntrance();
+        target = s.getTarget();
     }
 
     /**
@@ -98,12 +130,27 @@ public class Cavern {
      * Use rand as a source of randomness for the cavern generation.
      */
     public static Cavern digExploreCavern(int rows, int cols, Random rand) {
-        int minOrbDist = minOrbDistance(rows, cols);
+        return digExploreCavern(rows, cols, rand, GenerationMode.RESAMPLE);
+    }
 
-        Cavern cavern = new Cavern(rows, cols, rand, () -> 1, () -> 0, Tile.Type.ORB);
-        while (cavern.minPathLengthToTarget(cavern.getEntrance()) < minOrbDist) {
-            cavern = new Cavern(rows, cols, rand, () -> 1, () -> 0, Tile.Type.ORB);
-        }
+    /**
+     * Return a new random Cavern of size (rows, cols) with no gold, as
+     * digExploreCavern(rows, cols, rand) does, generated according to mode.
+     */
+    public static Cavern digExploreCavern(int rows, int cols, Random rand, GenerationMode mode) {
+        int minOrbDist = minOrbDistance(rows, cols);
+        int minTargetDist = (mode == GenerationMode.CONSTRUCTIVE ? minOrbDist : 0);
+
+        // Attempts are checked on the layout, so that only the cavern kept is built.
+        CavernLayout layout = new CavernLayout(rows, cols);
+        int attempts = 0;
+        do {
+            attempts++;
+            layout.generate(rand, Tile.Type.ORB, () -> 0, CavernLayout.NONE, minTargetDist);
+        } while (layout.getTarget() == CavernLayout.NONE
+                || (mode == GenerationMode.RESAMPLE && layout.targetDistance() < minOrbDist));
+        Cavern cavern = new Cavern(layout, () -> 1);
+        cavern.generationAttempts = attempts;
         return cavern;
     }
 
@@ -120,15 +167,58 @@ public class Cavern {
      * Use rand as a source of randomness for the cavern generation.
      */
     public static Cavern digEscapeCavern(int rows, int cols, int currentRow, int currentCol, Random rand) {
-        Supplier<Integer> edgeWeightGen = () -> rand.nextInt(MAX_EDGE_WEIGHT) + 1;
-        Supplier<Integer> goldGen = () -> Cavern.generateGoldValue(rand);
-        Cavern potentialCavern = new Cavern(rows, cols, rand, edgeWeightGen, goldGen, Tile.Type.ENTRANCE);
-        while (potentialCavern.getTileAt(currentRow, currentCol).getType() != Tile.Type.FLOOR) {
-            potentialCavern = new Cavern(rows, cols, rand, edgeWeightGen, goldGen, Tile.Type.ENTRANCE);
+        return digEscapeCavern(rows, cols, currentRow, currentCol, rand, GenerationMode.RESAMPLE);
+    }
+
+    /**
+     * Return a new random Cavern of size (rows, cols) with random gold and edge
+     * weights in which (currentRow, currentCol) is an open floor cell, as
+     * digEscapeCavern(rows, cols, currentRow, currentCol, rand) does, generated
+     * according to mode.
+     * Throw an IllegalArgumentException if (currentRow, currentCol) is not
+     * strictly inside the grid, since no cavern could then satisfy the constraint.
+     */
+    public static Cavern digEscapeCavern(int rows, int cols, int currentRow, int currentCol, Random rand,
+                                         GenerationMode mode) {
+        if (currentRow <= 0 || currentRow >= rows - 1 || currentCol <= 0 || currentCol >= cols - 1) {
+            throw new IllegalArgumentException("digEscapeCavern: (" + currentRow + ", " + currentCol
+                    + ") is not inside a " + rows + "x" + cols + " grid");
         }
+        IntSupplier edgeWeightGen = () -> rand.nextInt(MAX_EDGE_WEIGHT) + 1;
+        IntSupplier goldGen = () -> Cavern.generateGoldValue(rand);
+        int seed = (mode == GenerationMode.CONSTRUCTIVE ? currentRow * cols + currentCol : CavernLayout.NONE);
+
+        // Attempts are checked on the layout, so that only the cavern kept is built.
+        CavernLayout layout = new CavernLayout(rows, cols);
+        int attempts = 0;
+        boolean accepted;
+        do {
+            attempts++;
+            layout.generate(rand, Tile.Type.ENTRANCE, goldGen, seed, 0);
+            int current = layout.getIdAt(currentRow, currentCol);
+            accepted = layout.getEntrance() != CavernLayout.NONE
+                    && current != CavernLayout.NONE && layout.getType(current) == Tile.Type.FLOOR;
+            if (!accepted) {
+                // Draw the weights of the edges of the cavern thrown away all the same,
+                // so that a seed goes on giving the caverns it always has.
+                for (int k = layout.edgeCount(); k > 0; k--) {
+                    edgeWeightGen.getAsInt();
+                }
+            }
+        } while (!accepted);
+        Cavern potentialCavern = new Cavern(layout, edgeWeightGen);
+        potentialCavern.generationAttempts = attempts;
         return potentialCavern;
     }
 
+    /**
+     * Return the number of caverns that were generated (and all but the last
+     * thrown away) to produce this one; 1 for caverns that were not generated.
+     */
+    public int getGenerationAttempts() {
+        return generationAttempts;
+    }
+
     /**
      * Return a randomly determined gold value for a given tile.
      */
@@ -146,61 +236,18 @@ public class Cavern {
 
     /**
      * Convert nodeStrList into a Cavern and return it.
+     * The ids in the list are only used to resolve the edges; the nodes of the
+     * returned cavern are given fresh dense ids in the order they appear.
+     * To read a cavern from a file, use {@code CavernReader.read}, which does not
+     * need the whole file in memory.
      * Precondition: The list of strings is of the format output by {@code serialize()}.
      */
     public static Cavern deserialize(List<String> nodeStrList) {
-        String extraInfo = nodeStrList.get(0);
-        String[] infoParts = extraInfo.split(",");
-        String[] dimensions = infoParts[0].split(":");
-        int rows = Integer.parseInt(dimensions[0]);
-        int cols = Integer.parseInt(dimensions[1]);
-        long targetId = Long.parseLong(infoParts[1].split(":")[1]);
-
-        Map<Long, Node> idToNode = new HashMap<>();
-        for (String nodeStr : nodeStrList) {
-            if (!nodeStr.equals(extraInfo)) {
-
-                String nodeInfo = nodeStr.substring(0, nodeStr.indexOf("="));
-                String[] splitInfo = nodeInfo.split(",");
-
-                long nodeId = Long.parseLong(splitInfo[0]);
-                Node n = new Node(nodeId,
-                        new Tile(Integer.parseInt(splitInfo[1]),
-                                Integer.parseInt(splitInfo[2]),
-                                Integer.parseInt(splitInfo[3]),
-                                Tile.Type.valueOf(splitInfo[4])));
-                idToNode.put(nodeId, n);
-            }
-        }
-
-        Node[][] tiles = new Node[rows][cols];
-        for (String nodeStr : nodeStrList) {
-            // The first line is not a node, it's metadata, so skip it.
-            if (nodeStr.equals(extraInfo)) {
-                continue;
-            }
-
-            String[] nodeAndEdgeInfo = nodeStr.split("=");
-            long nodeId = Long.parseLong(nodeAndEdgeInfo[0].split(",")[0]);
-
-            Node n = idToNode.get(nodeId);
-            tiles[n.getTile().getRow()][n.getTile().getColumn()] = n;
-            for (String edgeStr : nodeAndEdgeInfo[1].split(",")) {
-                String[] idAndWeight = edgeStr.split("-");
-                long otherId = Long.parseLong(idAndWeight[0]);
-                int weight = Integer.parseInt(idAndWeight[1]);
-                n.addEdge(new Edge(n, idToNode.get(otherId), weight));
-            }
-        }
-
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < cols; j++) {
-                if (tiles[i][j] == null) {
-                    tiles[i][j] = new Node(new Tile(i, j, 0, Tile.Type.WALL));
-                }
-            }
+        try {
+            return CavernReader.read(new StringReader(String.join("\n", nodeStrList)));
+        } catch (IOException e) {
+            throw new IllegalArgumentException("deserialize: " + e.getMessage());
         }
-        return new Cavern(new HashSet<>(idToNode.values()), tiles, idToNode.get(targetId));
     }
 
     /**
@@ -209,125 +256,27 @@ public class Cavern {
      * Precondition: all elements of {@code tiles} are non-null and
      * the grid of nodes has no edges.
      */
-    private void createEdges(Node[][] tiles, Supplier<Integer> edgeWeightGenerator) {
+    private static void createEdges(Node[][] tiles, IntSupplier edgeWeightGenerator) {
         for (int i = 0; i < tiles.length - 1; i++) {
             for (int j = 0; j < tiles[i].length - 1; j++) {
                 Node node = tiles[i][j];
                 if (node.getTile().getType() == Tile.Type.WALL) {
                     continue;
                 }
-
-                final Point p = new Point(i, j);
-                Stream.of(Direction.SOUTH, Direction.EAST)
-                        .map(Direction::getPoint)
-                        .map(p::add)
-                        .map((q) -> tiles[q.row][q.col])
-                        .filter((m) -> m.getTile().getType() != Tile.Type.WALL)
-                        .forEach((m) -> {
-                            int weight = edgeWeightGenerator.get();
-                            node.addEdge(new Edge(node, m, weight));
-                            m.addEdge(new Edge(m, node, weight));
-                        });
-            }
-        }
-    }
-
-    /**
-     * Return true iff p is on the grid
-     */
-    private boolean isValid(Point p) {
-        return p.row > 0 && p.row < rows - 1 &&
-                p.col > 0 && p.col < cols - 1;
-    }
-
-    /**
-     * Generate a new random graph that fits within the grid and return the set of nodes.
-     * Use goldGenerator to generate gold.
-     * If targetType is not ENTRANCE, make the target be some random node that is
-     * not the entrance.
-     */
-    private Set<Node> generateGraph(Random rand,
-                                    Tile.Type targetType,
-                                    Supplier<Integer> goldGenerator) {
-        List<Node> nodes = new ArrayList<>();
-
-        Set<Point> pointsSeen = new HashSet<>();
-        Set<Point> openPoints = new HashSet<>();
-        Queue<Node> frontier = new ArrayDeque<>();
-
-        Point entrancePoint = getEntrancePoint(rand);
-        Node entrance = new Node(new Tile(entrancePoint.row, entrancePoint.col, 0, Tile.Type.ENTRANCE));
-        nodes.add(entrance);
-
-        pointsSeen.add(entrancePoint);
-        openPoints.add(entrancePoint);
-        frontier.add(entrance);
-        while (!frontier.isEmpty()) {
-            Node node = frontier.remove();
-            Point p = new Point(node.getTile().getRow(), node.getTile().getColumn());
-
-            // We want to make sure there's a way out if we can get one.
-            // This will prevent stupid degenerate graphs.
-            int existingExits = 0;
-            List<Point> newExits = new ArrayList<>();
-            for (Direction dir : Direction.values()) {
-                Point newPt = dir.getPoint().add(p);
-                if (isValid(newPt)) {
-                    if (openPoints.contains(newPt)) {
-                        existingExits++;
-                    } else if (pointsSeen.add(newPt)) {
-                        newExits.add(newPt);
-                    }
-                }
-            }
-
-            int nExits = newExits.size();
-            if (nExits > 0) {
-                double modifiedDensity;
-                Point forcedExit;
-                // Modify the density function so that the expected number of open exits
-                // is the same even though we're forcing something to be open.
-                if (existingExits < 2) {
-                    modifiedDensity = (nExits == 1 ? 0.0 : (nExits * DENSITY - 1) / (nExits - 1));
-                    forcedExit = newExits.get(rand.nextInt(newExits.size()));
-                } else {
-                    modifiedDensity = DENSITY;
-                    forcedExit = null;
-                }
-                newExits.stream()
-                        .filter((q) -> q.equals(forcedExit) || rand.nextDouble() < modifiedDensity)
-                        .peek(openPoints::add)
-                        .map((q) -> new Node(new Tile(q.row, q.col, goldGenerator.get(), Tile.Type.FLOOR)))
-                        .peek(frontier::add)
-                        .forEach(nodes::add);
+                joinIfOpen(node, tiles[i + 1][j], edgeWeightGenerator); // south
+                joinIfOpen(node, tiles[i][j + 1], edgeWeightGenerator); // east
             }
         }
-
-        if (targetType != Tile.Type.ENTRANCE) {
-            // Grab a random tile that's not the entrance and make it the target.
-            int targetIdx = rand.nextInt(nodes.size() - 1) + 1;
-            nodes.get(targetIdx).getTile().setType(targetType);
-        }
-
-        return Collections.unmodifiableSet(new HashSet<>(nodes));
     }
 
     /**
-     * Randomly determine and return the entrance to the cavern
-     * (the only non-wall tile along an edge of the grid).
+     * Unless m is a wall, add an edge between node and m with a weight from edgeWeightGenerator.
      */
-    private Point getEntrancePoint(Random rand) {
-        switch (rand.nextInt(4)) {
-            case 0: // North wall
-                return new Point(rand.nextInt(rows - 2) + 1, 0);
-            case 1: // South wall
-                return new Point(rand.nextInt(rows - 2) + 1, cols - 1);
-            case 2: // West wall
-                return new Point(0, rand.nextInt(cols - 2) + 1);
-            case 3: // East wall
-                return new Point(rows - 1, rand.nextInt(cols - 2) + 1);
-            default:
-                throw new IllegalStateException("Unexpected random value!");
+    private static void joinIfOpen(Node node, Node m, IntSupplier edgeWeightGenerator) {
+        if (m.getTile().getType() != Tile.Type.WALL) {
+            int weight = edgeWeightGenerator.getAsInt();
+            node.addEdge(new Edge(node, m, weight));
+            m.addEdge(new Edge(m, node, weight));
         }
     }
 
@@ -335,7 +284,7 @@ public class Cavern {
      * Return the number of open floor tiles in this cavern (this is the size of the graph).
      */
     public int numOpenTiles() {
-        return graph.size();
+        return storage.size();
     }
 
     /**
@@ -357,7 +306,14 @@ public class Cavern {
      * This is an umodifiable view of the graph.
      */
     public Set<Node> getGraph() {
-        return graph;
+        return storage.getGraph();
+    }
+
+    /**
+     * Return the storage holding the tiles and graph of this cavern.
+     */
+    /* package */ CavernStorage getStorage() {
+        return storage;
     }
 
     /**
@@ -379,7 +335,7 @@ public class Cavern {
      * Precondition: ({@code r}, {@code c}) must be in the grid.
      */
     public Tile getTileAt(int r, int c) {
-        return tiles[r][c].getTile();
+        return storage.getNodeAt(r, c).getTile();
     }
 
     /**
@@ -387,47 +343,136 @@ public class Cavern {
      * Precondition: ({@code r}, {@code c}) must be in the grid.
      */
     public Node getNodeAt(int r, int c) {
-        return tiles[r][c];
+        return storage.getNodeAt(r, c);
     }
 
     /**
-     * Package-private implementation of Dijkstra's algorithm that returns
-     * only the minimum distance between the given node and the target node for
-     * this cavern (no path).
-     * Precondition: {@code start} must be a node in this cavern.
+     * Return the tree of shortest paths from source to every node of this cavern.
+     * Trees are cached (see {@code setPathCacheBudget}), so repeated queries from
+     * the same source do not search the graph again.
+     * Precondition: {@code source} must be a node in this cavern.
      */
-    int minPathLengthToTarget(Node start) {
+    public ShortestPathTree getShortestPathTree(Node source) {
+        return pathCache.get(source, this::searchFrom);
+    }
 
-        InternalMinHeap<Node> frontier = new InternalMinHeap<>();
+    /**
+     * Return the tree of shortest paths from source, computed with Dijkstra's
+     * algorithm or, in caverns with at least the parallel threshold of open
+     * nodes, with delta-stepping in the common fork-join pool.
+     */
+    private ShortestPathTree searchFrom(Node source) {
+        if (storage.size() < parallelThreshold) {
+            return ShortestPathTree.compute(source, storage);
+        }
+        DeltaStepping search;
+        synchronized (this) {
+            if (parallelSearch == null) {
+                parallelSearch = new DeltaStepping(this);
+            }
+            search = parallelSearch;
+        }
+        return search.compute(source);
+    }
 
-        /** Contains an entry for each node in the Settled and Frontier sets. */
-        Map<Long, Integer> pathWeights = new HashMap<>();
+    /**
+     * Return the index of the gold left in this cavern. It is built on first
+     * use and kept up to date as gold is taken.
+     */
+    public GoldIndex getGoldIndex() {
+        if (goldIndex == null) {
+            goldIndex = new GoldIndex(storage);
+        }
+        return goldIndex;
+    }
 
-        pathWeights.put(start.getId(), 0);
-        frontier.add(start, 0);
-        /// invariant: as in lecture notes
-        while (!frontier.isEmpty()) {
-            Node f = frontier.poll();
-            if (f.equals(target)) {
-                return pathWeights.get(f.getId());
-            }
+    /**
+     * Put back all the gold taken from this cavern, so that it can be played
+     * again. After the first call, this takes time proportional to the number
+     * of tiles that started with gold.
+     */
+    public void resetGold() {
+        storage.resetGold();
+        if (goldIndex != null) {
+            goldIndex.reset();
+        }
+    }
 
-            int nWeight = pathWeights.get(f.getId());
-
-            for (Edge e : f.getExits()) {
-                Node w = e.getOther(f);
-                int weightThroughN = nWeight + e.length();
-                Integer existingWeight = pathWeights.get(w.getId());
-                if (existingWeight == null) {
-                    pathWeights.put(w.getId(), weightThroughN);
-                    frontier.add(w, weightThroughN);
-                } else if (weightThroughN < existingWeight) {
-                    pathWeights.put(w.getId(), weightThroughN);
-                    frontier.changePriority(w, weightThroughN);
-                }
-            }
+    /**
+     * Return a copy of this cavern with the same ids, positions, types, lengths
+     * and gold (taken or not) as this cavern's, so that playing the copy leaves
+     * this cavern untouched. A cavern on the heap is copied node by node, in
+     * time proportional to the number of tiles and edges; a mapped cavern
+     * shares the mapping and copies only the record of the gold taken. Caches
+     * and settings (the path cache budget, the oracle, the parallel threshold)
+     * are not copied; the copy starts with the defaults.
+     */
+    public Cavern copy() {
+        return new Cavern(storage.copy());
+    }
+
+    /**
+     * Return the oracle that answers point-to-point shortest-path questions
+     * about this cavern: its cached shortest-path trees, unless
+     * useContractionHierarchy has been called.
+     */
+    public ShortestPathOracle getShortestPathOracle() {
+        return pathOracle;
+    }
+
+    /**
+     * Build a contraction hierarchy of this cavern, make it the oracle for
+     * shortest-path questions, and return it. Preprocessing takes a while, so
+     * this pays off only when many questions with different ends are asked.
+     */
+    public ContractionHierarchy useContractionHierarchy() {
+        ContractionHierarchy ch = ContractionHierarchy.build(this);
+        pathOracle = ch;
+        return ch;
+    }
+
+    /**
+     * Limit the memory used by cached shortest-path trees to about budgetBytes bytes.
+     * The most recently used tree is always kept, whatever the budget.
+     */
+    public void setPathCacheBudget(long budgetBytes) {
+        pathCache.setBudget(budgetBytes);
+    }
+
+    /**
+     * Make caverns with at least minOpenNodes open nodes compute their
+     * shortest-path trees with parallel delta-stepping (the default is
+     * DeltaStepping.PARALLEL_THRESHOLD; Integer.MAX_VALUE turns it off).
+     */
+    public void setParallelSearchThreshold(int minOpenNodes) {
+        parallelThreshold = minOpenNodes;
+    }
+
+    /**
+     * Return the number of calls to {@code getShortestPathTree} answered from the cache.
+     */
+    public long getPathCacheHits() {
+        return pathCache.getHits();
+    }
+
+    /**
+     * Return the number of calls to {@code getShortestPathTree} that had to search the graph.
+     */
+    public long getPathCacheMisses() {
+        return pathCache.getMisses();
+    }
+
+    /**
+     * Package-private: return the minimum distance between the given node and
+     * the target node for this cavern (no path), as given by the oracle.
+     * Precondition: {@code start} must be a node in this cavern.
+     */
+    int minPathLengthToTarget(Node start) {
+        int dist = pathOracle.distance(start, target);
+        if (dist == ShortestPathTree.UNREACHABLE) {
+            throw new IllegalStateException("The target should always be reachable.");
         }
-        throw new IllegalStateException("The above loop should always reach the desired location.");
+        return dist;
     }
 
     /**
@@ -437,7 +482,7 @@ public class Cavern {
     public List<String> serialize() {
         List<String> nodes = new ArrayList<>();
         nodes.add(rows + ":" + cols + ",trgt:" + target.getId());
-        for (Node n : graph) {
+        for (Node n : storage.getGraph()) {
             Tile t = n.getTile();
             String nodeStr = n.getId() + "," + t.getRow() + "," + t.getColumn() + "," + t.getGold() + "," + t.getType().name();
 
@@ -449,6 +494,49 @@ public class Cavern {
         return nodes;
     }
 
+    /**
+     * The default oracle, which answers from the cached shortest-path trees.
+     * Edge weights are symmetric, so a question is answered from the tree of
+     * its far end; asking about many starts with the same end searches once.
+     */
+    private class TreeOracle implements ShortestPathOracle {
+        @Override
+        public int distance(Node from, Node to) {
+            return getShortestPathTree(to).distanceTo(from);
+        }
+
+        @Override
+        public List<Node> path(Node from, Node to) {
+            return getShortestPathTree(to).pathFrom(from);
+        }
+
+        @Override
+        public int path(Node from, Node to, int[] ids) {
+            return getShortestPathTree(to).pathFrom(from, ids);
+        }
+    }
+
+    /**
+     * An enum representing the ways a cavern can be made to satisfy the
+     * constraints placed on it (an orb far enough from the entrance, or a
+     * given tile being open).
+     */
+    public enum GenerationMode {
+        /**
+         * Generate whole caverns until one happens to satisfy the constraints.
+         * The number of attempts is unbounded, but a given seed gives the
+         * same caverns as it always has.
+         */
+        RESAMPLE,
+        /**
+         * Build the constraints into a single generation: grow the cavern from
+         * the tile that must be open, and choose the orb among the tiles far
+         * enough from the entrance. Another attempt is needed only when no
+         * tile qualifies, which is rare.
+         */
+        CONSTRUCTIVE
+    }
+
     /**
      * An enum reprsenting a grid direction.
      */
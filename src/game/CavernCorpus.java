@@ -0,0 +1,291 @@
+package game;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * An instance is a read-only archive of pre-generated games: for each seed,
+ * the explore and escape caverns that {@code GameState} would dig from it.
+ * Loading a game from a corpus costs only decoding, so solver benchmarks
+ * measure only the solver and do not depend on the generator staying the same.
+ * <p>
+ * A corpus is a single file, in big-endian order:
+ * <pre>
+ *   int MAGIC, int VERSION, int number of games,
+ *   int flags (bit 0: compressed, bit 1: mapped),
+ *   then for each game an index entry:
+ *     long seed, long explore offset, int explore length,
+ *     long escape offset, int escape length,
+ *   then the caverns, each in the binary format of {@code CavernWriter}
+ *   (deflated if the corpus is compressed), or in the format of
+ *   {@code MappedCavern} at a multiple of 8 bytes if the corpus is mapped.
+ * </pre>
+ * The file is memory-mapped when opened. The caverns of a mapped corpus are
+ * played directly on the mapping, which every process reading the corpus
+ * shares, keeping only the gold taken on the heap; the others are decoded
+ * onto the heap on demand.
+ */
+public class CavernCorpus implements Closeable {
+    /**
+     * The first four bytes of a corpus: "CAVC"
+     */
+    public static final int MAGIC = 0x43415643;
+    /**
+     * The version of the corpus format written by this class
+     */
+    public static final int VERSION = 1;
+
+    private static final int COMPRESSED = 1;
+    private static final int MAPPED = 2;
+    private static final int HEADER_BYTES = 16;
+    private static final int ENTRY_BYTES = 8 + 8 + 4 + 8 + 4;
+
+    private final FileChannel channel;
+    private final Encoding encoding;
+    private final long[] seeds;
+    private final long[] offsets; // offsets[2i] and offsets[2i+1]: the explore and escape caverns of game i
+    private final int[] lengths;  // lengths[2i] and lengths[2i+1]: their lengths in bytes
+
+    /**
+     * Constructor: an instance reading the corpus open on ch.
+     */
+    private CavernCorpus(FileChannel ch) throws IOException {
+        channel = ch;
+        MappedByteBuffer header = ch.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(ch.size(), HEADER_BYTES));
+        if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC) {
+            throw new IOException("Not a cavern corpus");
+        }
+        int version = header.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported cavern corpus version " + version);
+        }
+        int count = header.getInt();
+        int flags = header.getInt();
+        encoding = ((flags & MAPPED) != 0 ? Encoding.MAPPED
+                : (flags & COMPRESSED) != 0 ? Encoding.DEFLATED : Encoding.BINARY);
+
+        seeds = new long[count];
+        offsets = new long[2 * count];
+        lengths = new int[2 * count];
+        MappedByteBuffer index = ch.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES, (long) count * ENTRY_BYTES);
+        for (int i = 0; i < count; i++) {
+            seeds[i] = index.getLong();
+            offsets[2 * i] = index.getLong();
+            lengths[2 * i] = index.getInt();
+            offsets[2 * i + 1] = index.getLong();
+            lengths[2 * i + 1] = index.getInt();
+        }
+    }
+
+    /**
+     * Open the corpus at path. The corpus must be closed when no longer needed.
+     * Throw an IOException if path cannot be read or is not a corpus.
+     */
+    public static CavernCorpus open(Path path) throws IOException {
+        FileChannel ch = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new CavernCorpus(ch);
+        } catch (IOException | RuntimeException e) {
+            ch.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Generate the games for seeds and write them to a new corpus at path,
+     * deflating the caverns if compress is true.
+     */
+    public static void generate(Path path, long[] seeds, boolean compress) throws IOException {
+        generate(path, seeds, compress ? Encoding.DEFLATED : Encoding.BINARY);
+    }
+
+    /**
+     * Generate the games for seeds and write them to a new corpus at path,
+     * with the caverns encoded as given by encoding.
+     * Games are generated and encoded in parallel, a batch of a few per processor
+     * at a time, and written in the order of seeds.
+     */
+    public static void generate(Path path, long[] seeds, Encoding encoding) throws IOException {
+        try (FileChannel out = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            int flags = (encoding == Encoding.DEFLATED ? COMPRESSED : encoding == Encoding.MAPPED ? MAPPED : 0);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(VERSION).putInt(seeds.length).putInt(flags);
+            header.flip();
+            writeFully(out, header, 0);
+
+            ByteBuffer index = ByteBuffer.allocate(seeds.length * ENTRY_BYTES);
+            long offset = HEADER_BYTES + (long) index.capacity();
+            int batch = 4 * Math.max(1, ForkJoinPool.getCommonPoolParallelism());
+            for (int first = 0; first < seeds.length; first += batch) {
+                int firstGame = first;
+                byte[][][] encoded = new byte[Math.min(batch, seeds.length - first)][][];
+                IntStream.range(0, encoded.length).parallel()
+                        .forEach((i) -> encoded[i] = encodeGame(seeds[firstGame + i], encoding));
+
+                for (int i = 0; i < encoded.length; i++) {
+                    index.putLong(seeds[first + i]);
+                    for (byte[] cavern : encoded[i]) {
+                        if (encoding == Encoding.MAPPED) {
+                            offset = (offset + 7) & ~7L;
+                        }
+                        writeFully(out, ByteBuffer.wrap(cavern), offset);
+                        index.putLong(offset).putInt(cavern.length);
+                        offset += cavern.length;
+                    }
+                }
+            }
+            index.flip();
+            writeFully(out, index, HEADER_BYTES);
+        }
+    }
+
+    /**
+     * Return the number of games in this corpus.
+     */
+    public int size() {
+        return seeds.length;
+    }
+
+    /**
+     * Return the seed of game i.
+     */
+    public long getSeed(int i) {
+        return seeds[i];
+    }
+
+    /**
+     * Return the (explore, escape) caverns of game i, freshly decoded, or for a
+     * mapped corpus freshly mapped, with all their gold in place.
+     */
+    public Pair<Cavern, Cavern> load(int i) throws IOException {
+        return new Pair<>(loadCavern(2 * i), loadCavern(2 * i + 1));
+    }
+
+    /**
+     * Close the file underlying this corpus.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Decode (or map) and return cavern number k (see offsets).
+     */
+    private Cavern loadCavern(int k) throws IOException {
+        if (encoding == Encoding.MAPPED) {
+            return MappedCavern.map(channel, offsets[k], lengths[k]).newCavern();
+        }
+        ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, offsets[k], lengths[k]);
+        if (encoding == Encoding.DEFLATED) {
+            data = inflate(data);
+        }
+        return CavernReader.readBinary(data);
+    }
+
+    /**
+     * Return the explore and escape caverns of the game for seed, each encoded
+     * as given by encoding.
+     */
+    private static byte[][] encodeGame(long seed, Encoding encoding) {
+        Pair<Cavern, Cavern> caverns = GameState.digCaverns(seed);
+        return new byte[][]{encode(caverns.getFirst(), encoding), encode(caverns.getSecond(), encoding)};
+    }
+
+    /**
+     * Return cavern c encoded as given by encoding.
+     */
+    private static byte[] encode(Cavern c, Encoding encoding) {
+        if (encoding == Encoding.MAPPED) {
+            return MappedCavern.encode(c);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            CavernWriter.write(c, Channels.newChannel(bytes), CavernWriter.Format.BINARY);
+        } catch (IOException e) {
+            throw new IllegalStateException("Writing to memory cannot fail", e);
+        }
+        if (encoding == Encoding.BINARY) {
+            return bytes.toByteArray();
+        }
+        byte[] raw = bytes.toByteArray();
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        deflater.setInput(raw);
+        deflater.finish();
+        // Prefix the deflated data with the raw length, so inflating needs no guessing.
+        ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 4 + 16);
+        ByteBuffer rawLength = ByteBuffer.allocate(4).putInt(raw.length);
+        out.write(rawLength.array(), 0, 4);
+        byte[] chunk = new byte[8192];
+        while (!deflater.finished()) {
+            out.write(chunk, 0, deflater.deflate(chunk));
+        }
+        deflater.end();
+        return out.toByteArray();
+    }
+
+    /**
+     * Return the inflated contents of data, which was produced by {@code encode}.
+     */
+    private static ByteBuffer inflate(ByteBuffer data) throws IOException {
+        byte[] raw = new byte[data.getInt()];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            int n = 0;
+            while (n < raw.length && !inflater.finished()) {
+                int k = inflater.inflate(raw, n, raw.length - n);
+                if (k == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Malformed cavern corpus: truncated cavern");
+                }
+                n += k;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Malformed cavern corpus: " + e.getMessage());
+        } finally {
+            inflater.end();
+        }
+        return ByteBuffer.wrap(raw);
+    }
+
+    /**
+     * Write all of buf to out at position pos.
+     */
+    private static void writeFully(FileChannel out, ByteBuffer buf, long pos) throws IOException {
+        while (buf.hasRemaining()) {
+            pos += out.write(buf, pos);
+        }
+    }
+
+    /**
+     * An enum representing the ways the caverns of a corpus can be stored.
+     */
+    public enum Encoding {
+        /**
+         * In the binary format of CavernWriter, decoded onto the heap when loaded
+         */
+        BINARY,
+        /**
+         * In the binary format of CavernWriter, deflated: the smallest corpus
+         */
+        DEFLATED,
+        /**
+         * In the format of MappedCavern: loading costs almost nothing, and the
+         * games are played on the mapped file, shared by every process reading it
+         */
+        MAPPED
+    }
+}
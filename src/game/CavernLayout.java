@@ -0,0 +1,369 @@
+package game;
+
+import java.util.BitSet;
+import java.util.Random;
+import java.util.function.IntSupplier;
+
+/**
+ * An instance is the layout of a randomly generated cavern before it is built
+ * out of Nodes and Edges: which cells are open, the gold on them and which of
+ * them are the entrance and the target.
+ * <p>
+ * The cell (row, col) is represented by the int row * cols + col, and the
+ * layout is kept in bit sets and int arrays indexed by cell or by node id,
+ * allocated once when the instance is created. generate() can be called again
+ * and again on the same instance without allocating anything, so Cavern
+ * generates layouts until one satisfies its constraints and builds the nodes
+ * of that one only.
+ * <p>
+ * generate() draws random numbers in exactly the order in which Cavern drew
+ * them when it grew its graph directly out of Nodes, so a seed gives the same
+ * caverns as it always has.
+ */
+/* package */ final class CavernLayout {
+    /**
+     * The cell or node id that stands for none
+     */
+    static final int NONE = -1;
+
+    private static final double DENSITY = 0.6;
+
+    /**
+     * The row and column offsets of the neighbours of a cell, in the order of Cavern.Direction.values()
+     */
+    private static final int[] ROW_STEP = {-1, 0, 1, 0};
+    private static final int[] COL_STEP = {0, 1, 0, -1};
+
+    final int rows;
+    final int cols;
+    private final BitSet seen;  // the cells that have been considered for opening
+    private final BitSet open;  // the cells of the nodes
+    private final int[] idAt;   // idAt[c] is the id of the node at open cell c
+    private final int[] cells;  // cells[i] is the cell of the node with id i
+    private final int[] gold;   // gold[i] is the gold on the node with id i
+    private final int[] queue;  // the queue of a breadth-first traversal, of cells or of ids
+    private final int[] dist;   // dist[i] is the number of steps from the entrance to node i
+    private final int[] newExits = new int[ROW_STEP.length]; // the cells opened around one cell
+    private Tile.Type targetType;
+    private int size;           // the number of nodes
+    private int entrance;       // the id of the entrance, or NONE
+    private int target;         // the id of the target, or NONE
+
+    /**
+     * Constructor: an empty layout for a grid of size (rows, cols).
+     */
+    CavernLayout(int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
+        int n = rows * cols;
+        seen = new BitSet(n);
+        open = new BitSet(n);
+        idAt = new int[n];
+        cells = new int[n];
+        gold = new int[n];
+        queue = new int[n];
+        dist = new int[n];
+    }
+
+    /**
+     * Replace this layout by a new random one, using rand as the source of
+     * randomness and goldGenerator to generate gold values.
+     * If seed is NONE, grow it from a random entrance; otherwise grow it from
+     * a floor cell at seed and then open a random entrance beside one of its
+     * cells (leaving out the entrance if no cell is beside the edge of the grid).
+     * If targetType is not ENTRANCE, make the target be some random node that is
+     * not the entrance and, if minTargetDistance > 0, is at least that many
+     * steps from the entrance (leaving out the target if there is none).
+     * Nodes get ids in the order they are opened.
+     * Precondition: seed is NONE or an interior cell, and
+     * {@code targetType} is either {@code Tile.Type.ORB} or {@code Tile.Type.ENTRANCE}.
+     */
+    void generate(Random rand, Tile.Type targetType, IntSupplier goldGenerator, int seed, int minTargetDistance) {
+        this.targetType = targetType;
+        seen.clear();
+        open.clear();
+        size = 0;
+        entrance = NONE;
+        target = NONE;
+
+        int start = (seed == NONE ? getEntranceCell(rand) : seed);
+        int startGold = (seed == NONE ? 0 : goldGenerator.getAsInt());
+        if (seed == NONE) {
+            entrance = 0;
+        }
+        seen.set(start);
+        addNode(start, startGold);
+
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = start;
+        while (head < tail) {
+            int cell = queue[head++];
+            int row = cell / cols;
+            int col = cell % cols;
+
+            // We want to make sure there's a way out if we can get one.
+            // This will prevent stupid degenerate graphs.
+            int existingExits = 0;
+            int nExits = 0;
+            for (int d = 0; d < ROW_STEP.length; d++) {
+                int r = row + ROW_STEP[d];
+                int c = col + COL_STEP[d];
+                if (r > 0 && r < rows - 1 && c > 0 && c < cols - 1) {
+                    int next = r * cols + c;
+                    if (open.get(next)) {
+                        existingExits++;
+                    } else if (!seen.get(next)) {
+                        seen.set(next);
+                        newExits[nExits++] = next;
+                    }
+                }
+            }
+
+            if (nExits > 0) {
+                double modifiedDensity;
+                int forcedExit;
+                // Modify the density function so that the expected number of open exits
+                // is the same even though we're forcing something to be open.
+                if (existingExits < 2) {
+                    modifiedDensity = (nExits == 1 ? 0.0 : (nExits * DENSITY - 1) / (nExits - 1));
+                    forcedExit = rand.nextInt(nExits);
+                } else {
+                    modifiedDensity = DENSITY;
+                    forcedExit = NONE;
+                }
+                for (int k = 0; k < nExits; k++) {
+                    if (k == forcedExit || rand.nextDouble() < modifiedDensity) {
+                        addNode(newExits[k], goldGenerator.getAsInt());
+                        queue[tail++] = newExits[k];
+                    }
+                }
+            }
+        }
+
+        if (seed != NONE) {
+            int entranceCell = getEntranceCellBeside(rand);
+            if (entranceCell == NONE) {
+                return;
+            }
+            entrance = size;
+            addNode(entranceCell, 0);
+        }
+
+        if (targetType == Tile.Type.ENTRANCE) {
+            target = entrance;
+        } else if (minTargetDistance > 0) {
+            int far = traverseFromEntrance();
+            int count = 0;
+            for (int k = 0; k < far; k++) {
+                if (dist[queue[k]] >= minTargetDistance) {
+                    count++;
+                }
+            }
+            if (count > 0) {
+                int chosen = rand.nextInt(count);
+                for (int k = 0; target == NONE; k++) {
+                    if (dist[queue[k]] >= minTargetDistance && chosen-- == 0) {
+                        target = queue[k];
+                    }
+                }
+            }
+        } else {
+            // Grab a random node that's not the entrance and make it the target.
+            // Nodes are listed with the entrance first and then the others in id order.
+            int targetIdx = rand.nextInt(size - 1) + 1;
+            target = (targetIdx - 1 < entrance ? targetIdx - 1 : targetIdx);
+        }
+    }
+
+    /**
+     * Open cell with gold g as the node with the next id.
+     */
+    private void addNode(int cell, int g) {
+        open.set(cell);
+        idAt[cell] = size;
+        cells[size] = cell;
+        gold[size] = g;
+        size++;
+    }
+
+    /**
+     * Randomly determine and return the cell of the entrance to the cavern
+     * (the only non-wall tile along an edge of the grid).
+     */
+    private int getEntranceCell(Random rand) {
+        switch (rand.nextInt(4)) {
+            case 0: // North wall
+                return (rand.nextInt(rows - 2) + 1) * cols;
+            case 1: // South wall
+                return (rand.nextInt(rows - 2) + 1) * cols + cols - 1;
+            case 2: // West wall
+                return rand.nextInt(cols - 2) + 1;
+            case 3: // East wall
+                return (rows - 1) * cols + rand.nextInt(cols - 2) + 1;
+            default:
+                throw new IllegalStateException("Unexpected random value!");
+        }
+    }
+
+    /**
+     * Return a random cell on the edge of the grid (not a corner) beside one of
+     * the nodes, or NONE if there is none. A cell beside several nodes is
+     * counted once for each of them.
+     */
+    private int getEntranceCellBeside(Random rand) {
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            for (int d = 0; d < ROW_STEP.length; d++) {
+                if (isEntranceCandidate(cells[i], d)) {
+                    count++;
+                }
+            }
+        }
+        if (count == 0) {
+            return NONE;
+        }
+        int chosen = rand.nextInt(count);
+        for (int i = 0; i < size; i++) {
+            for (int d = 0; d < ROW_STEP.length; d++) {
+                if (isEntranceCandidate(cells[i], d) && chosen-- == 0) {
+                    return cells[i] + ROW_STEP[d] * cols + COL_STEP[d];
+                }
+            }
+        }
+        throw new IllegalStateException("getEntranceCellBeside: lost a candidate");
+    }
+
+    /**
+     * Return true iff the neighbour of cell in direction d is on the edge of
+     * the grid but not in a corner.
+     */
+    private boolean isEntranceCandidate(int cell, int d) {
+        int r = cell / cols + ROW_STEP[d];
+        int c = cell % cols + COL_STEP[d];
+        boolean rowEdge = r == 0 || r == rows - 1;
+        boolean colEdge = c == 0 || c == cols - 1;
+        return rowEdge != colEdge;
+    }
+
+    /**
+     * Traverse the nodes breadth-first from the entrance, along the grid, and
+     * return the number of nodes reached. Afterwards queue[0..result-1] holds
+     * their ids in the order they were reached and dist[i] is the number of
+     * steps from the entrance to each node i reached.
+     * Precondition: there is an entrance.
+     */
+    private int traverseFromEntrance() {
+        BitSet reached = seen; // the cells seen while growing are no longer needed
+        reached.clear();
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = entrance;
+        dist[entrance] = 0;
+        reached.set(cells[entrance]);
+        while (head < tail) {
+            int id = queue[head++];
+            int row = cells[id] / cols;
+            int col = cells[id] % cols;
+            for (int d = 0; d < ROW_STEP.length; d++) {
+                int r = row + ROW_STEP[d];
+                int c = col + COL_STEP[d];
+                int next = r * cols + c;
+                if (r >= 0 && r < rows && c >= 0 && c < cols && open.get(next) && !reached.get(next)) {
+                    reached.set(next);
+                    dist[idAt[next]] = dist[id] + 1;
+                    queue[tail++] = idAt[next];
+                }
+            }
+        }
+        return tail;
+    }
+
+    /**
+     * Return the number of steps along the grid from the entrance to the
+     * target, or Integer.MAX_VALUE if the target cannot be reached.
+     * Precondition: there is an entrance and a target.
+     */
+    int targetDistance() {
+        int reached = traverseFromEntrance();
+        for (int k = 0; k < reached; k++) {
+            if (queue[k] == target) {
+                return dist[target];
+            }
+        }
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * Return the number of edges a cavern built from this layout has, which is
+     * the number of edge weights Cavern draws when it builds it.
+     */
+    int edgeCount() {
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            // Only nodes off the last row and column look for neighbours (south and east).
+            if (cells[i] / cols < rows - 1 && cells[i] % cols < cols - 1) {
+                if (open.get(cells[i] + cols)) {
+                    count++;
+                }
+                if (open.get(cells[i] + 1)) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Return the number of nodes.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Return the id of the entrance, or NONE if there is none.
+     */
+    int getEntrance() {
+        return entrance;
+    }
+
+    /**
+     * Return the id of the target, or NONE if there is none.
+     */
+    int getTarget() {
+        return target;
+    }
+
+    /**
+     * Return the id of the node at cell (row, col), or NONE if it is a wall.
+     */
+    int getIdAt(int row, int col) {
+        int cell = row * cols + col;
+        return open.get(cell) ? idAt[cell] : NONE;
+    }
+
+    /**
+     * Return the cell of the node with id i.
+     */
+    int getCell(int i) {
+        return cells[i];
+    }
+
+    /**
+     * Return the gold on the node with id i.
+     */
+    int getGold(int i) {
+        return gold[i];
+    }
+
+    /**
+     * Return the type of the tile of the node with id i.
+     */
+    Tile.Type getType(int i) {
+        if (i == entrance) {
+            return Tile.Type.ENTRANCE;
+        }
+        return i == target ? targetType : Tile.Type.FLOOR;
+    }
+}
@@ -0,0 +1,405 @@
+package game;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * An instance reads a cavern in the text format produced by {@code Cavern.serialize()}
+ * in a single streaming pass, or in the binary format of {@code CavernWriter}.
+ * <p>
+ * Characters are read through a fixed-size buffer and numbers are parsed by hand,
+ * so no String is created per line or per field. Edges to nodes that appear later
+ * in the input are kept in primitive arrays and resolved at the end, so apart from
+ * the cavern itself the memory used is bounded by the number of such forward references.
+ * As with {@code Cavern.deserialize}, the nodes are given fresh dense ids in the order
+ * they appear.
+ */
+public final class CavernReader {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final Tile.Type[] TYPES = Tile.Type.values();
+
+    private final Reader in;
+    private final char[] buf = new char[BUFFER_SIZE];
+    private int pos;    // index in buf of the next character to read
+    private int limit;  // number of valid characters in buf
+    private int line = 1; // line number of the next character, for error messages
+    private final char[] typeName = new char[8]; // the tile type being read
+
+    private final NodeIdAllocator ids = new NodeIdAllocator();
+    private final LongIntHashMap fileIdToId = new LongIntHashMap(1024, -1);
+    private Node[] nodes = new Node[1024]; // nodes[i] is the node with (new) id i
+
+    // Edges whose destination had not been read yet: pendingSrc[i] -> file id pendingDest[i]
+    private int[] pendingSrc = new int[256];
+    private long[] pendingDest = new long[256];
+    private int[] pendingWeight = new int[256];
+    private int pendingCount;
+
+    /**
+     * Constructor: an instance that reads from r.
+     */
+    private CavernReader(Reader r) {
+        in = r;
+    }
+
+    /**
+     * Read and return the cavern in the file at path.
+     * Throw an IOException if the file cannot be read or is not in the format
+     * output by {@code Cavern.serialize()}.
+     */
+    public static Cavern read(Path path) throws IOException {
+        try (Reader r = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            return read(r);
+        }
+    }
+
+    /**
+     * Read and return the cavern from r. r is not closed.
+     * Throw an IOException if r cannot be read or is not in the format
+     * output by {@code Cavern.serialize()}.
+     */
+    public static Cavern read(Reader r) throws IOException {
+        return new CavernReader(r).readCavern();
+    }
+
+    /**
+     * Read and return the cavern in the file at path, which is in the binary
+     * format written by {@code CavernWriter}. The file is memory-mapped rather
+     * than copied onto the heap.
+     * Throw an IOException if the file cannot be read or is not in that format.
+     */
+    public static Cavern readBinary(Path path) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            return readBinary(ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()));
+        }
+    }
+
+    /**
+     * Read and return the cavern in buf, from its position on, in the binary
+     * format written by {@code CavernWriter}. The position of buf is advanced
+     * past the cavern.
+     * Throw an IOException if buf does not hold a cavern in that format.
+     */
+    public static Cavern readBinary(ByteBuffer buf) throws IOException {
+        try {
+            return new CavernReader(null).readBinaryCavern(buf);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("Malformed binary cavern: truncated");
+        }
+    }
+
+    /**
+     * Read the binary cavern in buf and return it.
+     * Nodes are stored in order of id, so the first pass creates them and the
+     * second adds the edges, which may refer to any node.
+     */
+    private Cavern readBinaryCavern(ByteBuffer buf) throws IOException {
+        buf.order(ByteOrder.BIG_ENDIAN);
+        if (buf.getInt() != CavernWriter.MAGIC) {
+            throw new IOException("Malformed binary cavern: bad magic number");
+        }
+        int version = buf.getInt();
+        if (version != CavernWriter.VERSION) {
+            throw new IOException("Unsupported binary cavern version " + version);
+        }
+        int rows = buf.getInt();
+        int cols = buf.getInt();
+        int target = buf.getInt();
+        int nOpen = buf.getInt();
+        if (target < 0 || target >= nOpen) {
+            throw new IOException("Malformed binary cavern: unknown target " + target);
+        }
+
+        nodes = new Node[Math.max(1, nOpen)];
+        int start = buf.position();
+        for (int i = 0; i < nOpen; i++) {
+            int row = buf.getInt();
+            int col = buf.getInt();
+            int gold = buf.getInt();
+            int type = buf.get();
+            int nEdges = buf.get();
+            if (row < 0 || row >= rows || col < 0 || col >= cols || type < 0 || type >= TYPES.length) {
+                throw new IOException("Malformed binary cavern: bad record for node " + i);
+            }
+            nodes[i] = new Node(ids, new Tile(row, col, gold, TYPES[type]));
+            buf.position(buf.position() + 5 * nEdges);
+        }
+        int end = buf.position();
+
+        buf.position(start);
+        for (int i = 0; i < nOpen; i++) {
+            buf.position(buf.position() + 13);
+            int nEdges = buf.get();
+            for (int k = 0; k < nEdges; k++) {
+                int other = buf.getInt();
+                int weight = buf.get() & 0xFF;
+                if (other < 0 || other >= nOpen) {
+                    throw new IOException("Malformed binary cavern: edge to unknown node " + other);
+                }
+                nodes[i].addEdge(new Edge(nodes[i], nodes[other], weight));
+            }
+        }
+        buf.position(end);
+        return assemble(rows, cols, nodes[target]);
+    }
+
+    /**
+     * Read the whole input and return the cavern it describes.
+     */
+    private Cavern readCavern() throws IOException {
+        // Header: rows:cols,trgt:id
+        int rows = readInt();
+        expect(':');
+        int cols = readInt();
+        expect(',');
+        expect('t');
+        expect('r');
+        expect('g');
+        expect('t');
+        expect(':');
+        long targetFileId = readLong();
+        endLine();
+
+        // One line per node: id,row,col,gold,TYPE=otherId-weight,otherId-weight,...
+        while (skipBlankLines()) {
+            long fileId = readLong();
+            expect(',');
+            int row = readInt();
+            expect(',');
+            int col = readInt();
+            expect(',');
+            int gold = readInt();
+            expect(',');
+            Tile.Type type = readType();
+            expect('=');
+            if (row < 0 || row >= rows || col < 0 || col >= cols) {
+                throw error("tile (" + row + ", " + col + ") is not in the grid");
+            }
+            Node n = addNode(fileId, new Tile(row, col, gold, type));
+
+            if (peek() != '\n' && peek() != '\r' && peek() != -1) {
+                do {
+                    long otherFileId = readLong();
+                    expect('-');
+                    int weight = readInt();
+                    addEdge(n, otherFileId, weight);
+                } while (accept(','));
+            }
+            endLine();
+        }
+
+        for (int i = 0; i < pendingCount; i++) {
+            int other = fileIdToId.get(pendingDest[i]);
+            if (other < 0) {
+                throw new IOException("Malformed cavern: edge to unknown node " + pendingDest[i]);
+            }
+            Node n = nodes[pendingSrc[i]];
+            n.addEdge(new Edge(n, nodes[other], pendingWeight[i]));
+        }
+
+        int target = fileIdToId.get(targetFileId);
+        if (target < 0) {
+            throw new IOException("Malformed cavern: unknown target " + targetFileId);
+        }
+        return assemble(rows, cols, nodes[target]);
+    }
+
+    /**
+     * Create a node with a fresh id and tile t for the node with id fileId
+     * in the input, and return it.
+     */
+    private Node addNode(long fileId, Tile t) throws IOException {
+        Node n = new Node(ids, t);
+        int id = (int) n.getId();
+        if (fileIdToId.put(fileId, id) >= 0) {
+            throw error("node " + fileId + " appears twice");
+        }
+        if (id == nodes.length) {
+            nodes = Arrays.copyOf(nodes, 2 * id);
+        }
+        nodes[id] = n;
+        return n;
+    }
+
+    /**
+     * Add an edge of weight w from n to the node with id otherFileId in the input,
+     * or remember it if that node has not been read yet.
+     */
+    private void addEdge(Node n, long otherFileId, int w) {
+        int other = fileIdToId.get(otherFileId);
+        if (other >= 0) {
+            n.addEdge(new Edge(n, nodes[other], w));
+            return;
+        }
+        if (pendingCount == pendingSrc.length) {
+            pendingSrc = Arrays.copyOf(pendingSrc, 2 * pendingCount);
+            pendingDest = Arrays.copyOf(pendingDest, 2 * pendingCount);
+            pendingWeight = Arrays.copyOf(pendingWeight, 2 * pendingCount);
+        }
+        pendingSrc[pendingCount] = (int) n.getId();
+        pendingDest[pendingCount] = otherFileId;
+        pendingWeight[pendingCount] = w;
+        pendingCount++;
+    }
+
+    /**
+     * Return the cavern of size (rows, cols) made of the nodes read so far,
+     * with walls wherever no node was read, and target trgt.
+     */
+    private Cavern assemble(int rows, int cols, Node trgt) {
+        int nOpen = ids.size();
+        Node[][] tiles = new Node[rows][cols];
+        Set<Node> graph = new HashSet<>(Math.max(16, (int) (nOpen / 0.75f) + 1));
+        for (int i = 0; i < nOpen; i++) {
+            Tile t = nodes[i].getTile();
+            tiles[t.getRow()][t.getColumn()] = nodes[i];
+            graph.add(nodes[i]);
+        }
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                if (tiles[i][j] == null) {
+                    tiles[i][j] = new Node(ids, new Tile(i, j, 0, Tile.Type.WALL));
+                }
+            }
+        }
+        return new Cavern(graph, tiles, trgt);
+    }
+
+    /**
+     * Return the next character without consuming it, or -1 at the end of the input.
+     */
+    private int peek() throws IOException {
+        if (pos == limit) {
+            limit = in.read(buf, 0, buf.length);
+            pos = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buf[pos];
+    }
+
+    /**
+     * Consume the next character if it is c, and return true iff it was.
+     */
+    private boolean accept(char c) throws IOException {
+        if (peek() == c) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Consume the next character, throwing an IOException if it is not c.
+     */
+    private void expect(char c) throws IOException {
+        if (!accept(c)) {
+            throw error("expected '" + c + "'");
+        }
+    }
+
+    /**
+     * Consume the end of a line (or of the input).
+     */
+    private void endLine() throws IOException {
+        accept('\r');
+        if (!accept('\n') && peek() != -1) {
+            throw error("expected end of line");
+        }
+        line++;
+    }
+
+    /**
+     * Skip empty lines and return true iff there is more input.
+     */
+    private boolean skipBlankLines() throws IOException {
+        while (peek() == '\n' || peek() == '\r') {
+            if (buf[pos++] == '\n') {
+                line++;
+            }
+        }
+        return peek() != -1;
+    }
+
+    /**
+     * Read and return a non-negative decimal number.
+     */
+    private long readLong() throws IOException {
+        int c = peek();
+        if (c < '0' || c > '9') {
+            throw error("expected a number");
+        }
+        long value = 0;
+        while (c >= '0' && c <= '9') {
+            value = Math.addExact(Math.multiplyExact(value, 10), c - '0');
+            pos++;
+            c = peek();
+        }
+        return value;
+    }
+
+    /**
+     * Read and return a non-negative decimal number that fits in an int.
+     */
+    private int readInt() throws IOException {
+        long value = readLong();
+        if (value > Integer.MAX_VALUE) {
+            throw error("number too large");
+        }
+        return (int) value;
+    }
+
+    /**
+     * Read the name of a tile type and return the type.
+     */
+    private Tile.Type readType() throws IOException {
+        int length = 0;
+        int c = peek();
+        while (c >= 'A' && c <= 'Z' && length < typeName.length) {
+            typeName[length++] = (char) c;
+            pos++;
+            c = peek();
+        }
+        for (Tile.Type t : TYPES) {
+            if (typeNameIs(t.name(), length)) {
+                return t;
+            }
+        }
+        throw error("expected a tile type");
+    }
+
+    /**
+     * Return true iff typeName[0..length-1] holds the characters of name.
+     */
+    private boolean typeNameIs(String name, int length) {
+        if (name.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (name.charAt(i) != typeName[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return an IOException describing a syntax error at the current line.
+     */
+    private IOException error(String message) {
+        return new IOException("Malformed cavern at line " + line + ": " + message);
+    }
+}
@@ -0,0 +1,117 @@
+package game;
+
+import java.util.Set;
+
+/**
+ * An instance holds the grid and graph of a cavern. A Cavern answers every
+ * question about its tiles and graph through its storage, so the same game can
+ * be played on a cavern built from Node, Tile and Edge objects on the heap
+ * (HeapCavernStorage) or on one read from a memory-mapped file (MappedCavern).
+ * <p>
+ * The open nodes have ids 0..size()-1. Besides the Node objects it hands out,
+ * a storage answers questions about an open node by its id, so that searches
+ * over the whole graph need not go through Nodes and Edges.
+ */
+/* package */ interface CavernStorage {
+    /**
+     * Return the number of rows in the grid.
+     */
+    int getRowCount();
+
+    /**
+     * Return the number of columns in the grid.
+     */
+    int getColumnCount();
+
+    /**
+     * Return the number of open nodes.
+     */
+    int size();
+
+    /**
+     * Return the entrance of the cavern.
+     */
+    Node getEntrance();
+
+    /**
+     * Return the target of the cavern.
+     */
+    Node getTarget();
+
+    /**
+     * Return an unmodifiable set of the open nodes.
+     */
+    Set<Node> getGraph();
+
+    /**
+     * Return the open node with id id.
+     * Precondition: 0 <= id < size().
+     */
+    Node getNode(int id);
+
+    /**
+     * Return the node at position (r, c).
+     * Precondition: ({@code r}, {@code c}) must be in the grid.
+     */
+    Node getNodeAt(int r, int c);
+
+    /**
+     * Return the number of neighbours of open node id.
+     */
+    int getDegree(int id);
+
+    /**
+     * Return the id of the k'th neighbour of open node id, in the order of its edges.
+     * Precondition: 0 <= k < getDegree(id).
+     */
+    int getNeighbour(int id, int k);
+
+    /**
+     * Return the length of the edge from open node id to its k'th neighbour.
+     * Precondition: 0 <= k < getDegree(id).
+     */
+    int getEdgeWeight(int id, int k);
+
+    /**
+     * Return the row of open node id.
+     */
+    int getRow(int id);
+
+    /**
+     * Return the column of open node id.
+     */
+    int getColumn(int id);
+
+    /**
+     * Return the gold left on open node id.
+     */
+    int getGold(int id);
+
+    /**
+     * Return the gold that open node id started with.
+     */
+    int getOriginalGold(int id);
+
+    /**
+     * Return the graph of the open nodes in compressed sparse row form.
+     * It may be built on each call.
+     */
+    CsrGraph getCsrGraph();
+
+    /**
+     * Make the tiles of the open nodes tell index, where the key of a tile is
+     * the id of its node, when their gold is taken.
+     */
+    void setGoldIndex(GoldIndex index);
+
+    /**
+     * Put back all the gold taken from the cavern.
+     */
+    void resetGold();
+
+    /**
+     * Return a copy of this storage whose gold can be taken without changing
+     * this one's: the same grid, graph and gold (taken or not).
+     */
+    CavernStorage copy();
+}
@@ -0,0 +1,222 @@
+package game;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * An instance writes a cavern to a channel without building it in memory first.
+ * <p>
+ * The open nodes are split into chunks of consecutive ids. Up to one chunk per
+ * available processor is encoded in parallel, each into its own direct ByteBuffer,
+ * and the buffers are then written to the channel in order. The buffers are reused
+ * for the next chunks, so the memory used does not depend on the size of the cavern.
+ * <p>
+ * Two formats are supported: the text format of {@code Cavern.serialize()}, which
+ * {@code CavernReader.read} reads, and a compact binary format, which
+ * {@code CavernReader.readBinary} reads. The binary format is, in big-endian order:
+ * <pre>
+ *   int MAGIC, int VERSION, int rows, int cols, int target id, int number of open nodes,
+ *   then for each open node in order of id:
+ *   int row, int col, int gold, byte type ordinal, byte number of edges,
+ *   and for each edge: int other id, byte weight.
+ * </pre>
+ */
+public final class CavernWriter {
+    /**
+     * The first four bytes of a cavern in the binary format: "CAVB"
+     */
+    public static final int MAGIC = 0x43415642;
+    /**
+     * The version of the binary format written by this class
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * The formats a cavern can be written in.
+     */
+    public enum Format {
+        TEXT, BINARY
+    }
+
+    private static final int CHUNK_NODES = 8192;    // number of nodes encoded into one buffer
+    private static final int MAX_TEXT_NODE = 128;   // upper bound on the bytes of one node in text
+    private static final int MAX_BINARY_NODE = 14 + 4 * 5; // bytes of one node with 4 edges in binary
+    private static final byte[][] TYPE_NAMES = typeNames();
+
+    private final Cavern cavern;
+    private final CavernStorage nodes; // the storage of cavern, which gives the open node with each id
+    private final Format format;
+    private final ByteBuffer[] buffers; // one buffer per chunk encoded in parallel
+
+    /**
+     * Constructor: an instance that writes c in format f.
+     */
+    private CavernWriter(Cavern c, Format f) {
+        cavern = c;
+        nodes = c.getStorage();
+        format = f;
+        int parallelism = Math.max(1, ForkJoinPool.getCommonPoolParallelism());
+        int chunks = (nodes.size() + CHUNK_NODES - 1) / CHUNK_NODES;
+        buffers = new ByteBuffer[Math.max(1, Math.min(parallelism, chunks))];
+        int perNode = (f == Format.TEXT ? MAX_TEXT_NODE : MAX_BINARY_NODE);
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = ByteBuffer.allocateDirect(CHUNK_NODES * perNode);
+        }
+    }
+
+    /**
+     * Write cavern c in format f to the file at path, replacing any existing file.
+     */
+    public static void write(Cavern c, Path path, Format f) throws IOException {
+        try (FileChannel out = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            write(c, out, f);
+        }
+    }
+
+    /**
+     * Write cavern c in format f to out. out is not closed.
+     */
+    public static void write(Cavern c, WritableByteChannel out, Format f) throws IOException {
+        new CavernWriter(c, f).writeTo(out);
+    }
+
+    /**
+     * Write the cavern to out.
+     */
+    private void writeTo(WritableByteChannel out) throws IOException {
+        ByteBuffer header = buffers[0];
+        header.clear();
+        if (format == Format.TEXT) {
+            putNumber(header, cavern.getRowCount());
+            header.put((byte) ':');
+            putNumber(header, cavern.getColumnCount());
+            header.put(",trgt:".getBytes(StandardCharsets.US_ASCII));
+            putNumber(header, cavern.getTarget().getId());
+        } else {
+            header.putInt(MAGIC).putInt(VERSION)
+                    .putInt(cavern.getRowCount()).putInt(cavern.getColumnCount())
+                    .putInt((int) cavern.getTarget().getId()).putInt(nodes.size());
+        }
+        drain(header, out);
+
+        int chunks = (nodes.size() + CHUNK_NODES - 1) / CHUNK_NODES;
+        for (int first = 0; first < chunks; first += buffers.length) {
+            int firstChunk = first;
+            int count = Math.min(buffers.length, chunks - first);
+            if (count == 1) {
+                encodeChunk(firstChunk, buffers[0]);
+            } else {
+                IntStream.range(0, count).parallel()
+                        .forEach((i) -> encodeChunk(firstChunk + i, buffers[i]));
+            }
+            for (int i = 0; i < count; i++) {
+                drain(buffers[i], out);
+            }
+        }
+    }
+
+    /**
+     * Clear buf and encode the nodes of chunk number chunk into it, ready to be written.
+     */
+    private void encodeChunk(int chunk, ByteBuffer buf) {
+        buf.clear();
+        int end = Math.min(nodes.size(), (chunk + 1) * CHUNK_NODES);
+        for (int i = chunk * CHUNK_NODES; i < end; i++) {
+            if (format == Format.TEXT) {
+                encodeText(nodes.getNode(i), buf);
+            } else {
+                encodeBinary(nodes.getNode(i), buf);
+            }
+        }
+    }
+
+    /**
+     * Put the line for node n, in the format of {@code Cavern.serialize()}, into buf.
+     * Every line, including the header, is preceded by the line separator.
+     */
+    private static void encodeText(Node n, ByteBuffer buf) {
+        Tile t = n.getTile();
+        buf.put((byte) '\n');
+        putNumber(buf, n.getId());
+        buf.put((byte) ',');
+        putNumber(buf, t.getRow());
+        buf.put((byte) ',');
+        putNumber(buf, t.getColumn());
+        buf.put((byte) ',');
+        putNumber(buf, t.getGold());
+        buf.put((byte) ',');
+        buf.put(TYPE_NAMES[t.getType().ordinal()]);
+        buf.put((byte) '=');
+        boolean first = true;
+        for (Edge e : n.getExits()) {
+            if (!first) {
+                buf.put((byte) ',');
+            }
+            first = false;
+            putNumber(buf, e.getOther(n).getId());
+            buf.put((byte) '-');
+            putNumber(buf, e.length());
+        }
+    }
+
+    /**
+     * Put the binary record for node n into buf.
+     */
+    private static void encodeBinary(Node n, ByteBuffer buf) {
+        Tile t = n.getTile();
+        buf.putInt(t.getRow()).putInt(t.getColumn()).putInt(t.getGold());
+        buf.put((byte) t.getType().ordinal());
+        buf.put((byte) n.getExits().size());
+        for (Edge e : n.getExits()) {
+            buf.putInt((int) e.getOther(n).getId());
+            buf.put((byte) e.length());
+        }
+    }
+
+    /**
+     * Put the decimal digits of the non-negative number value into buf.
+     */
+    private static void putNumber(ByteBuffer buf, long value) {
+        if (value < 10) {
+            buf.put((byte) ('0' + value));
+            return;
+        }
+        long divisor = 10;
+        while (divisor <= value / 10) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            buf.put((byte) ('0' + (value / divisor) % 10));
+        }
+    }
+
+    /**
+     * Flip buf and write all of it to out.
+     */
+    private static void drain(ByteBuffer buf, WritableByteChannel out) throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) {
+            out.write(buf);
+        }
+    }
+
+    /**
+     * Return the ASCII names of the tile types, indexed by ordinal.
+     */
+    private static byte[][] typeNames() {
+        Tile.Type[] types = Tile.Type.values();
+        byte[][] names = new byte[types.length][];
+        for (int i = 0; i < types.length; i++) {
+            names[i] = types[i].name().getBytes(StandardCharsets.US_ASCII);
+        }
+        return names;
+    }
+}
@@ -0,0 +1,532 @@
+package game;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An instance is a contraction hierarchy over the open nodes of a cavern: a
+ * preprocessed form of the graph that answers point-to-point shortest-path
+ * questions by searching a small part of it.
+ * <p>
+ * Preprocessing contracts the nodes one at a time, cheapest first by edge
+ * difference (the shortcuts a contraction would add, less the edges it would
+ * remove, plus the neighbours already contracted, which spreads contractions
+ * over the graph). Contracting v removes it and adds a shortcut u-w for each
+ * pair of its neighbours whose shortest connection went through v, unless a
+ * bounded local search finds another path as short (a witness). The rank of a
+ * node is its position in this order.
+ * <p>
+ * Every edge and shortcut is kept once, at its lower-ranked end, in compressed
+ * sparse row arrays: this is the upward graph. A query runs Dijkstra's
+ * algorithm upward from both ends at once; the two searches meet at the
+ * highest-ranked node of a shortest path. Shortcuts record the node they
+ * bypass, so paths are unpacked into cavern nodes on request.
+ * <p>
+ * Queries are synchronized: they reuse one set of search arrays.
+ */
+public final class ContractionHierarchy implements ShortestPathOracle {
+    /**
+     * The number of nodes a witness search may settle before giving up
+     * (and adding the shortcut, which is then possibly unnecessary)
+     */
+    private static final int WITNESS_SETTLE_LIMIT = 100;
+    private static final int INF = ShortestPathTree.UNREACHABLE;
+
+    private final CavernStorage nodes; // gives the open node with each id
+    private final int[] rank;       // rank[v] is the position of v in the contraction order
+    private final int shortcuts;    // the number of shortcuts added
+
+    /**
+     * The upward graph: the edges from v to higher-ranked nodes are
+     * upTargets[upOffsets[v] .. upOffsets[v + 1] - 1], with lengths upWeights[...]
+     * and, for shortcuts, the bypassed node upMiddles[...] (-1 for cavern edges).
+     */
+    private final int[] upOffsets;
+    private final int[] upTargets;
+    private final int[] upWeights;
+    private final int[] upMiddles;
+
+    /**
+     * Query state: for each direction, node v was reached by the current query
+     * iff seen[v] == epoch, at distance dist[v] via upward edge parentEdge[v]
+     * from parentNode[v].
+     */
+    private final int[] distF;
+    private final int[] distB;
+    private final int[] seenF;
+    private final int[] seenB;
+    private final int[] parentEdgeF;
+    private final int[] parentEdgeB;
+    private final int[] parentNodeF;
+    private final int[] parentNodeB;
+    private final IntMinHeap heapF = new IntMinHeap(64);
+    private final IntMinHeap heapB = new IntMinHeap(64);
+    private int epoch;
+    private int meetingNode; // the node where the last search met, if it found a path
+
+    // Unpacking state, reused by every query: the upward chain from the source
+    // to the meeting node, the stack of shortcuts still to unpack, and (made on
+    // first use) the ids of the path being turned into a list by path(Node, Node)
+    private int[] chain = new int[16];
+    private int[] stack = new int[24];
+    private int[] pathIds;
+
+    private ContractionHierarchy(CavernStorage ns, int[] rank, int shortcuts, int[] upOffsets,
+                                 int[] upTargets, int[] upWeights, int[] upMiddles) {
+        nodes = ns;
+        this.rank = rank;
+        this.shortcuts = shortcuts;
+        this.upOffsets = upOffsets;
+        this.upTargets = upTargets;
+        this.upWeights = upWeights;
+        this.upMiddles = upMiddles;
+        distF = new int[ns.size()];
+        distB = new int[ns.size()];
+        seenF = new int[ns.size()];
+        seenB = new int[ns.size()];
+        parentEdgeF = new int[ns.size()];
+        parentEdgeB = new int[ns.size()];
+        parentNodeF = new int[ns.size()];
+        parentNodeB = new int[ns.size()];
+    }
+
+    /**
+     * Return the contraction hierarchy of the open nodes of cavern.
+     */
+    public static ContractionHierarchy build(Cavern cavern) {
+        return build(cavern.getStorage());
+    }
+
+    /**
+     * Return the contraction hierarchy of the open nodes of storage ns.
+     */
+    /* package */ static ContractionHierarchy build(CavernStorage ns) {
+        return new Builder(ns.getCsrGraph()).build(ns);
+    }
+
+    /**
+     * Return the number of nodes in this hierarchy.
+     */
+    public int size() {
+        return nodes.size();
+    }
+
+    /**
+     * Return the number of shortcuts added by preprocessing.
+     */
+    public int getShortcutCount() {
+        return shortcuts;
+    }
+
+    /**
+     * Return the position of n in the contraction order.
+     */
+    public int getRank(Node n) {
+        return rank[(int) n.getId()];
+    }
+
+    @Override
+    public synchronized int distance(Node from, Node to) {
+        return search((int) from.getId(), (int) to.getId());
+    }
+
+    @Override
+    public synchronized List<Node> path(Node from, Node to) {
+        if (pathIds == null) {
+            pathIds = new int[nodes.size()];
+        }
+        int moves = path(from, to, pathIds);
+        if (moves < 0) {
+            return Collections.emptyList();
+        }
+        List<Node> path = new ArrayList<>(moves + 1);
+        path.add(nodes.getNode((int) from.getId()));
+        for (int k = 0; k < moves; k++) {
+            path.add(nodes.getNode(pathIds[k]));
+        }
+        return path;
+    }
+
+    @Override
+    public synchronized int path(Node from, Node to, int[] ids) {
+        int s = (int) from.getId();
+        int t = (int) to.getId();
+        int meet = search(s, t) == INF ? -1 : meetingNode;
+        if (meet < 0) {
+            return -1;
+        }
+
+        // The forward search tree gives the upward path s .. meet, to be walked from s.
+        int links = 0;
+        for (int v = meet; v != s; v = parentNodeF[v]) {
+            if (links == chain.length) {
+                chain = Arrays.copyOf(chain, 2 * links);
+            }
+            chain[links++] = v;
+        }
+        int count = 0;
+        for (int k = links - 1; k >= 0; k--) {
+            int v = chain[k];
+            count = unpack(parentNodeF[v], v, parentEdgeF[v], ids, count);
+        }
+        // The backward search tree gives the path meet .. t directly.
+        for (int v = meet; v != t; v = parentNodeB[v]) {
+            count = unpack(v, parentNodeB[v], parentEdgeB[v], ids, count);
+        }
+        return count;
+    }
+
+    /**
+     * Return the length of a shortest path from s to t (INF if there is none)
+     * and set meetingNode to the highest-ranked node on it.
+     */
+    private int search(int s, int t) {
+        meetingNode = s;
+        if (s == t) {
+            return 0;
+        }
+        epoch++;
+        heapF.clear();
+        heapB.clear();
+        distF[s] = 0;
+        seenF[s] = epoch;
+        heapF.add(s, 0);
+        distB[t] = 0;
+        seenB[t] = epoch;
+        heapB.add(t, 0);
+
+        int best = INF;
+        while (!heapF.isEmpty() || !heapB.isEmpty()) {
+            boolean forward = heapB.isEmpty() || (!heapF.isEmpty() && heapF.minKey() <= heapB.minKey());
+            IntMinHeap heap = (forward ? heapF : heapB);
+            if (heap.minKey() >= best) {
+                heap.clear(); // nothing on this side can improve on best
+                continue;
+            }
+            int d = heap.minKey();
+            int u = heap.poll();
+            int[] dist = (forward ? distF : distB);
+            if (d > dist[u]) {
+                continue; // a stale copy
+            }
+            int[] otherSeen = (forward ? seenB : seenF);
+            int[] otherDist = (forward ? distB : distF);
+            if (otherSeen[u] == epoch && d + otherDist[u] < best) {
+                best = d + otherDist[u];
+                meetingNode = u;
+            }
+
+            int[] seen = (forward ? seenF : seenB);
+            int[] parentEdge = (forward ? parentEdgeF : parentEdgeB);
+            int[] parentNode = (forward ? parentNodeF : parentNodeB);
+            for (int e = upOffsets[u]; e < upOffsets[u + 1]; e++) {
+                int x = upTargets[e];
+                int dx = d + upWeights[e];
+                if (seen[x] != epoch || dx < dist[x]) {
+                    seen[x] = epoch;
+                    dist[x] = dx;
+                    parentEdge[x] = e;
+                    parentNode[x] = u;
+                    heap.add(x, dx);
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Store the ids of the nodes after a on the cavern path that upward edge e
+     * between a and b stands for, up to and including b, in ids from index
+     * count on, and return the index after the last.
+     */
+    private int unpack(int a, int b, int e, int[] ids, int count) {
+        // Pending (from, to, edge) triples, the next one on top.
+        int top = 0;
+        stack[top++] = a;
+        stack[top++] = b;
+        stack[top++] = e;
+        while (top > 0) {
+            int edge = stack[--top];
+            int to = stack[--top];
+            int from = stack[--top];
+            int m = upMiddles[edge];
+            if (m < 0) {
+                ids[count++] = to;
+                continue;
+            }
+            if (top + 6 > stack.length) {
+                stack = Arrays.copyOf(stack, 2 * stack.length);
+            }
+            // m was contracted before both ends, so both halves are upward edges of m.
+            stack[top++] = m;
+            stack[top++] = to;
+            stack[top++] = upEdge(m, to);
+            stack[top++] = from;
+            stack[top++] = m;
+            stack[top++] = upEdge(m, from);
+        }
+        return count;
+    }
+
+    /**
+     * Return the upward edge from v to x.
+     */
+    private int upEdge(int v, int x) {
+        for (int e = upOffsets[v]; e < upOffsets[v + 1]; e++) {
+            if (upTargets[e] == x) {
+                return e;
+            }
+        }
+        throw new IllegalStateException("ContractionHierarchy: missing edge " + v + "-" + x);
+    }
+
+    /**
+     * Contracts a graph, keeping the remaining (not yet contracted) part in
+     * per-node growable adjacency arrays.
+     */
+    private static final class Builder {
+        private final int n;
+        private final int[][] adjTo;    // adjTo[v][0..degree[v]-1]: the remaining neighbours of v
+        private final int[][] adjWeight;
+        private final int[][] adjMiddle;
+        private final int[] degree;
+        private final boolean[] contracted;
+        private final int[] contractedNeighbours;
+
+        private final int[] witnessDist;
+        private final int[] witnessSeen;
+        private int witnessEpoch;
+        private final IntMinHeap witnessHeap = new IntMinHeap(256);
+
+        // The upward edges recorded so far, in contraction order.
+        private int[] upFrom = new int[1024];
+        private int[] upTo = new int[1024];
+        private int[] upWeight = new int[1024];
+        private int[] upMiddle = new int[1024];
+        private int upSize;
+        private int shortcuts;
+
+        private Builder(CsrGraph g) {
+            n = g.size();
+            adjTo = new int[n][];
+            adjWeight = new int[n][];
+            adjMiddle = new int[n][];
+            degree = new int[n];
+            for (int v = 0; v < n; v++) {
+                int from = g.offsets[v];
+                int to = g.offsets[v + 1];
+                degree[v] = to - from;
+                int room = Math.max(4, degree[v]);
+                adjTo[v] = Arrays.copyOf(Arrays.copyOfRange(g.targets, from, to), room);
+                adjWeight[v] = Arrays.copyOf(Arrays.copyOfRange(g.weights, from, to), room);
+                adjMiddle[v] = new int[room];
+                Arrays.fill(adjMiddle[v], -1);
+            }
+            contracted = new boolean[n];
+            contractedNeighbours = new int[n];
+            witnessDist = new int[n];
+            witnessSeen = new int[n];
+        }
+
+        private ContractionHierarchy build(CavernStorage ns) {
+            IntMinHeap queue = new IntMinHeap(n);
+            for (int v = 0; v < n; v++) {
+                queue.add(v, priority(v));
+            }
+            int[] rank = new int[n];
+            int next = 0;
+            while (!queue.isEmpty()) {
+                int v = queue.poll();
+                if (contracted[v]) {
+                    continue; // a stale copy
+                }
+                // Priorities change as neighbours are contracted: refresh lazily.
+                int p = priority(v);
+                if (!queue.isEmpty() && p > queue.minKey()) {
+                    queue.add(v, p);
+                    continue;
+                }
+                rank[v] = next++;
+                contract(v);
+            }
+
+            int[] offsets = new int[n + 1];
+            for (int k = 0; k < upSize; k++) {
+                offsets[upFrom[k] + 1]++;
+            }
+            for (int v = 0; v < n; v++) {
+                offsets[v + 1] += offsets[v];
+            }
+            int[] targets = new int[upSize];
+            int[] weights = new int[upSize];
+            int[] middles = new int[upSize];
+            int[] fill = Arrays.copyOf(offsets, n);
+            for (int k = 0; k < upSize; k++) {
+                int e = fill[upFrom[k]]++;
+                targets[e] = upTo[k];
+                weights[e] = upWeight[k];
+                middles[e] = upMiddle[k];
+            }
+            return new ContractionHierarchy(ns, rank, shortcuts, offsets, targets, weights, middles);
+        }
+
+        /**
+         * Return the edge difference of v: the shortcuts contracting it would add,
+         * less the edges it would remove, plus its contracted neighbours.
+         */
+        private int priority(int v) {
+            return shortcutsFor(v, false) - degree[v] + contractedNeighbours[v];
+        }
+
+        /**
+         * Contract v: record its remaining edges as upward edges, add the
+         * shortcuts it needs and remove it from the graph.
+         */
+        private void contract(int v) {
+            for (int i = 0; i < degree[v]; i++) {
+                recordUpward(v, adjTo[v][i], adjWeight[v][i], adjMiddle[v][i]);
+            }
+            shortcutsFor(v, true);
+            contracted[v] = true;
+            for (int i = 0; i < degree[v]; i++) {
+                int x = adjTo[v][i];
+                removeEdge(x, v);
+                contractedNeighbours[x]++;
+            }
+        }
+
+        /**
+         * Return the number of shortcuts contracting v needs, adding them iff add is true.
+         */
+        private int shortcutsFor(int v, boolean add) {
+            int needed = 0;
+            int d = degree[v];
+            int maxWeight = 0;
+            for (int i = 0; i < d; i++) {
+                maxWeight = Math.max(maxWeight, adjWeight[v][i]);
+            }
+            for (int i = 0; i < d - 1; i++) {
+                int u = adjTo[v][i];
+                int wu = adjWeight[v][i];
+                witnessSearch(u, v, wu + maxWeight);
+                for (int j = i + 1; j < d; j++) {
+                    int x = adjTo[v][j];
+                    int via = wu + adjWeight[v][j];
+                    if (witnessSeen[x] == witnessEpoch && witnessDist[x] <= via) {
+                        continue; // a path as short avoids v
+                    }
+                    needed++;
+                    if (add) {
+                        addShortcut(u, x, via, v);
+                    }
+                }
+            }
+            return needed;
+        }
+
+        /**
+         * Run Dijkstra's algorithm from s in the remaining graph without node
+         * avoid, up to distance limit or WITNESS_SETTLE_LIMIT settled nodes.
+         * Afterwards witnessDist holds an upper bound on the distance of each
+         * node reached (those with witnessSeen equal to witnessEpoch).
+         */
+        private void witnessSearch(int s, int avoid, int limit) {
+            witnessEpoch++;
+            witnessHeap.clear();
+            witnessSeen[s] = witnessEpoch;
+            witnessDist[s] = 0;
+            witnessHeap.add(s, 0);
+            int settled = 0;
+            while (!witnessHeap.isEmpty() && witnessHeap.minKey() <= limit && settled < WITNESS_SETTLE_LIMIT) {
+                int d = witnessHeap.minKey();
+                int u = witnessHeap.poll();
+                if (d > witnessDist[u]) {
+                    continue;
+                }
+                settled++;
+                for (int i = 0; i < degree[u]; i++) {
+                    int x = adjTo[u][i];
+                    if (x == avoid) {
+                        continue;
+                    }
+                    int dx = d + adjWeight[u][i];
+                    if (witnessSeen[x] != witnessEpoch || dx < witnessDist[x]) {
+                        witnessSeen[x] = witnessEpoch;
+                        witnessDist[x] = dx;
+                        witnessHeap.add(x, dx);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Connect a and b by a shortcut of length weight bypassing middle,
+         * unless they are already connected at least as closely.
+         */
+        private void addShortcut(int a, int b, int weight, int middle) {
+            for (int i = 0; i < degree[a]; i++) {
+                if (adjTo[a][i] == b) {
+                    if (weight < adjWeight[a][i]) {
+                        adjWeight[a][i] = weight;
+                        adjMiddle[a][i] = middle;
+                        int j = indexOf(b, a);
+                        adjWeight[b][j] = weight;
+                        adjMiddle[b][j] = middle;
+                    }
+                    return;
+                }
+            }
+            appendEdge(a, b, weight, middle);
+            appendEdge(b, a, weight, middle);
+            shortcuts++;
+        }
+
+        private void appendEdge(int a, int b, int weight, int middle) {
+            if (degree[a] == adjTo[a].length) {
+                int room = 2 * degree[a];
+                adjTo[a] = Arrays.copyOf(adjTo[a], room);
+                adjWeight[a] = Arrays.copyOf(adjWeight[a], room);
+                adjMiddle[a] = Arrays.copyOf(adjMiddle[a], room);
+            }
+            adjTo[a][degree[a]] = b;
+            adjWeight[a][degree[a]] = weight;
+            adjMiddle[a][degree[a]++] = middle;
+        }
+
+        private int indexOf(int a, int b) {
+            for (int i = 0; i < degree[a]; i++) {
+                if (adjTo[a][i] == b) {
+                    return i;
+                }
+            }
+            throw new IllegalStateException("ContractionHierarchy: missing edge " + a + "-" + b);
+        }
+
+        /**
+         * Remove the edge from a to b, moving the last edge of a into its place.
+         */
+        private void removeEdge(int a, int b) {
+            int i = indexOf(a, b);
+            int last = --degree[a];
+            adjTo[a][i] = adjTo[a][last];
+            adjWeight[a][i] = adjWeight[a][last];
+            adjMiddle[a][i] = adjMiddle[a][last];
+        }
+
+        private void recordUpward(int from, int to, int weight, int middle) {
+            if (upSize == upFrom.length) {
+                int room = 2 * upSize;
+                upFrom = Arrays.copyOf(upFrom, room);
+                upTo = Arrays.copyOf(upTo, room);
+                upWeight = Arrays.copyOf(upWeight, room);
+                upMiddle = Arrays.copyOf(upMiddle, room);
+            }
+            upFrom[upSize] = from;
+            upTo[upSize] = to;
+            upWeight[upSize] = weight;
+            upMiddle[upSize++] = middle;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package game;
+
+/**
+ * An instance is the graph of the open nodes of a cavern in compressed sparse
+ * row form: the edges leaving node v are targets[offsets[v] .. offsets[v + 1] - 1],
+ * with lengths weights[...], where nodes are numbered by id. Search algorithms
+ * that run over many nodes use it instead of the Node and Edge objects, whose
+ * sets cost a pointer chase and an iterator per node.
+ */
+/* package */ final class CsrGraph {
+    final int[] offsets;
+    final int[] targets;
+    final int[] weights;
+
+    private CsrGraph(int[] offsets, int[] targets, int[] weights) {
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+    }
+
+    /**
+     * Return the graph of the open nodes ns.
+     * Precondition: ns is indexed by node id and holds every neighbour of its nodes.
+     */
+    static CsrGraph of(Node[] ns) {
+        int[] offsets = new int[ns.length + 1];
+        for (int v = 0; v < ns.length; v++) {
+            offsets[v + 1] = offsets[v] + ns[v].getExits().size();
+        }
+        int[] targets = new int[offsets[ns.length]];
+        int[] weights = new int[targets.length];
+        for (int v = 0; v < ns.length; v++) {
+            int k = offsets[v];
+            for (Edge e : ns[v].getExits()) {
+                targets[k] = (int) e.getOther(ns[v]).getId();
+                weights[k++] = e.length;
+            }
+        }
+        return new CsrGraph(offsets, targets, weights);
+    }
+
+    /**
+     * Return the graph of the open nodes of storage s.
+     */
+    static CsrGraph of(CavernStorage s) {
+        int n = s.size();
+        int[] offsets = new int[n + 1];
+        for (int v = 0; v < n; v++) {
+            offsets[v + 1] = offsets[v] + s.getDegree(v);
+        }
+        int[] targets = new int[offsets[n]];
+        int[] weights = new int[targets.length];
+        for (int v = 0; v < n; v++) {
+            for (int k = 0, e = offsets[v]; e < offsets[v + 1]; k++, e++) {
+                targets[e] = s.getNeighbour(v, k);
+                weights[e] = s.getEdgeWeight(v, k);
+            }
+        }
+        return new CsrGraph(offsets, targets, weights);
+    }
+
+    /**
+     * Return the number of nodes.
+     */
+    int size() {
+        return offsets.length - 1;
+    }
+}
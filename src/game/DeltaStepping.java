@@ -0,0 +1,362 @@
+package game;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * An instance computes shortest-path trees of a cavern with the parallel
+ * delta-stepping algorithm (Meyer and Sanders), for caverns too large for a
+ * single-threaded Dijkstra search.
+ * <p>
+ * Tentative distances are kept in buckets of width delta. The lowest non-empty
+ * bucket is emptied in phases: all its nodes relax their light edges (length
+ * at most delta) in parallel, which may put nodes back into the same bucket,
+ * until it stays empty; then the nodes removed from it relax their heavy edges.
+ * Edge lengths are at most Cavern.MAX_EDGE_WEIGHT, so only the few buckets
+ * after the current one can be reached and they are kept in a ring.
+ * <p>
+ * Each phase splits the nodes it relaxes into chunks, run as fork-join tasks.
+ * Distances are updated with compare-and-set, so a relaxation is never lost,
+ * and each chunk records the nodes it improved in its own lists, which are
+ * appended to the buckets when the phase ends. The distances are exactly those
+ * Dijkstra's algorithm finds, but the tree may choose a different one of
+ * several shortest paths: the parent of a node is its first neighbour (in
+ * edge order) on a shortest path.
+ * <p>
+ * The graph is taken in CsrGraph form once, when the instance is created, and
+ * an instance may be used by several threads at once.
+ */
+public final class DeltaStepping {
+    /**
+     * The bucket width used unless another is given. With buckets as wide as the
+     * longest edge every edge is light, and on cavern graphs the few nodes
+     * relaxed twice cost less than the extra phases of narrower buckets
+     * (a width of 1 is Dijkstra's algorithm with a bucket queue).
+     */
+    public static final int DEFAULT_DELTA = Cavern.MAX_EDGE_WEIGHT;
+
+    /**
+     * The number of open nodes from which a cavern computes its shortest-path
+     * trees with delta-stepping instead of Dijkstra's algorithm, by default
+     * (see Cavern.setParallelSearchThreshold)
+     */
+    public static final int PARALLEL_THRESHOLD = 100_000;
+
+    /**
+     * The number of nodes relaxed by one task; a phase with fewer runs in the
+     * calling thread
+     */
+    private static final int CHUNK = 256;
+
+    private final CavernStorage nodes; // gives the open node with each id
+    private final CsrGraph graph;
+    private final ForkJoinPool pool;
+    private final int delta;
+    private final int span;     // the number of buckets in the ring
+
+    /**
+     * Constructor: an instance for the open nodes of cavern that runs its tasks
+     * in the common fork-join pool, with buckets of width DEFAULT_DELTA.
+     */
+    public DeltaStepping(Cavern cavern) {
+        this(cavern.getStorage(), ForkJoinPool.commonPool(), DEFAULT_DELTA);
+    }
+
+    /**
+     * Constructor: an instance for the open nodes of cavern that runs its tasks
+     * in pool, with buckets of width delta.
+     * Throw an IllegalArgumentException if delta < 1.
+     */
+    public DeltaStepping(Cavern cavern, ForkJoinPool pool, int delta) {
+        this(cavern.getStorage(), pool, delta);
+    }
+
+    /**
+     * Constructor: an instance for the open nodes of storage ns that runs its
+     * tasks in pool, with buckets of width delta.
+     */
+    /* package */ DeltaStepping(CavernStorage ns, ForkJoinPool pool, int delta) {
+        if (delta < 1) {
+            throw new IllegalArgumentException("DeltaStepping: the bucket width must be positive");
+        }
+        nodes = ns;
+        graph = ns.getCsrGraph();
+        this.pool = pool;
+        this.delta = delta;
+        int maxWeight = 0;
+        for (int w : graph.weights) {
+            maxWeight = Math.max(maxWeight, w);
+        }
+        // A node relaxed from bucket i lands at most maxWeight / delta + 1 buckets later.
+        span = maxWeight / delta + 2;
+    }
+
+    /**
+     * Return the bucket width of this instance.
+     */
+    public int getDelta() {
+        return delta;
+    }
+
+    /**
+     * Return the tree of shortest paths from source to every open node.
+     * Precondition: {@code source} must be an open node of the cavern.
+     */
+    public ShortestPathTree compute(Node source) {
+        int[] d = distances(source);
+        int[] p = new int[d.length];
+        pool.invoke(new ParentTask(d, p, 0, d.length));
+        return new ShortestPathTree(source, d, p, nodes);
+    }
+
+    /**
+     * Return the array, indexed by node id, of the lengths of the shortest paths
+     * from source to every open node (ShortestPathTree.UNREACHABLE for nodes
+     * that cannot be reached).
+     * Precondition: {@code source} must be an open node of the cavern.
+     */
+    public int[] distances(Node source) {
+        return new Search((int) source.getId()).run();
+    }
+
+    /**
+     * A list of ints that grows as needed.
+     */
+    private static final class IntList {
+        int[] items = new int[16];
+        int size;
+
+        void add(int x) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, 2 * size);
+            }
+            items[size++] = x;
+        }
+
+        void addAll(IntList other) {
+            if (size + other.size > items.length) {
+                items = Arrays.copyOf(items, Math.max(2 * items.length, size + other.size));
+            }
+            System.arraycopy(other.items, 0, items, size, other.size);
+            size += other.size;
+        }
+    }
+
+    /**
+     * What one chunk of a phase produced: the nodes it took out of the current
+     * bucket and, for each bucket of the ring, the nodes it improved into it.
+     */
+    private final class ChunkOutput {
+        final IntList removed = new IntList();
+        final IntList[] improved = new IntList[span];
+
+        ChunkOutput() {
+            for (int b = 0; b < span; b++) {
+                improved[b] = new IntList();
+            }
+        }
+
+        void clear() {
+            removed.size = 0;
+            for (IntList l : improved) {
+                l.size = 0;
+            }
+        }
+    }
+
+    /**
+     * The state of one search: tentative distances, the ring of buckets and
+     * the per-chunk outputs, which are reused from phase to phase.
+     */
+    private final class Search {
+        final AtomicIntegerArray dist;
+        final IntList[] ring = new IntList[span]; // ring[b % span] is bucket b
+        int pending;                              // the number of entries in the ring
+        ChunkOutput[] outputs = new ChunkOutput[0];
+
+        Search(int source) {
+            int[] d = new int[nodes.size()];
+            Arrays.fill(d, ShortestPathTree.UNREACHABLE);
+            d[source] = 0;
+            dist = new AtomicIntegerArray(d);
+            for (int b = 0; b < span; b++) {
+                ring[b] = new IntList();
+            }
+            ring[0].add(source);
+            pending = 1;
+        }
+
+        /**
+         * Empty the buckets in order and return the final distances.
+         */
+        int[] run() {
+            IntList removed = new IntList();
+            for (int bucket = 0; pending > 0; bucket++) {
+                IntList current = ring[bucket % span];
+                removed.size = 0;
+                while (current.size > 0) {
+                    int[] frontier = Arrays.copyOf(current.items, current.size);
+                    pending -= current.size;
+                    current.size = 0;
+                    phase(frontier, bucket, true, removed);
+                }
+                if (removed.size > 0) {
+                    phase(Arrays.copyOf(removed.items, removed.size), bucket, false, null);
+                }
+            }
+            int[] d = new int[dist.length()];
+            for (int i = 0; i < d.length; i++) {
+                d[i] = dist.get(i);
+            }
+            return d;
+        }
+
+        /**
+         * Relax the light (if light) or heavy edges of the nodes of frontier that
+         * are still in bucket, and put the nodes they improve into their buckets.
+         * If removed is not null, append the nodes relaxed to it.
+         */
+        void phase(int[] frontier, int bucket, boolean light, IntList removed) {
+            int chunks = (frontier.length + CHUNK - 1) / CHUNK;
+            if (outputs.length < chunks) {
+                int old = outputs.length;
+                outputs = Arrays.copyOf(outputs, Math.max(chunks, 2 * old));
+                for (int c = old; c < outputs.length; c++) {
+                    outputs[c] = new ChunkOutput();
+                }
+            }
+            if (chunks == 1) {
+                relaxChunk(frontier, 0, bucket, light);
+            } else {
+                pool.invoke(new PhaseTask(this, frontier, bucket, light, 0, chunks));
+            }
+            for (int c = 0; c < chunks; c++) {
+                ChunkOutput out = outputs[c];
+                if (removed != null) {
+                    removed.addAll(out.removed);
+                }
+                for (int b = 0; b < span; b++) {
+                    ring[b].addAll(out.improved[b]);
+                    pending += out.improved[b].size;
+                }
+            }
+        }
+
+        /**
+         * Relax the light or heavy edges of the nodes of chunk c of frontier that
+         * are still in bucket, recording what is done in outputs[c].
+         */
+        void relaxChunk(int[] frontier, int c, int bucket, boolean light) {
+            ChunkOutput out = outputs[c];
+            out.clear();
+            int end = Math.min(frontier.length, (c + 1) * CHUNK);
+            for (int k = c * CHUNK; k < end; k++) {
+                int u = frontier[k];
+                int du = dist.get(u);
+                if (du / delta != bucket) {
+                    continue; // a stale entry: u has since moved to an earlier bucket
+                }
+                out.removed.add(u);
+                for (int e = graph.offsets[u], last = graph.offsets[u + 1]; e < last; e++) {
+                    int w = graph.weights[e];
+                    if ((w <= delta) == light) {
+                        relax(graph.targets[e], du + w, out);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Lower the distance of node v to nd if that improves it, and if so
+         * record v in out under its new bucket.
+         */
+        void relax(int v, int nd, ChunkOutput out) {
+            int old = dist.get(v);
+            while (nd < old) {
+                if (dist.compareAndSet(v, old, nd)) {
+                    out.improved[(nd / delta) % span].add(v);
+                    return;
+                }
+                old = dist.get(v);
+            }
+        }
+    }
+
+    /**
+     * The task that relaxes chunks lo..hi-1 of a phase.
+     */
+    private static final class PhaseTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Search search;
+        private final int[] frontier;
+        private final int bucket;
+        private final boolean light;
+        private final int lo;
+        private final int hi;
+
+        PhaseTask(Search search, int[] frontier, int bucket, boolean light, int lo, int hi) {
+            this.search = search;
+            this.frontier = frontier;
+            this.bucket = bucket;
+            this.light = light;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo == 1) {
+                search.relaxChunk(frontier, lo, bucket, light);
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            invokeAll(new PhaseTask(search, frontier, bucket, light, lo, mid),
+                    new PhaseTask(search, frontier, bucket, light, mid, hi));
+        }
+    }
+
+    /**
+     * The task that fills in the parents of nodes lo..hi-1 from the final distances.
+     */
+    private final class ParentTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] d;
+        private final int[] p;
+        private final int lo;
+        private final int hi;
+
+        ParentTask(int[] d, int[] p, int lo, int hi) {
+            this.d = d;
+            this.p = p;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo > 16 * CHUNK) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new ParentTask(d, p, lo, mid), new ParentTask(d, p, mid, hi));
+                return;
+            }
+            for (int v = lo; v < hi; v++) {
+                p[v] = -1;
+                if (d[v] == 0 || d[v] == ShortestPathTree.UNREACHABLE) {
+                    continue;
+                }
+                // Edges are symmetric, so the edges leaving v are those entering it.
+                for (int e = graph.offsets[v], last = graph.offsets[v + 1]; e < last; e++) {
+                    int u = graph.targets[e];
+                    if (d[u] != ShortestPathTree.UNREACHABLE && d[u] + graph.weights[e] == d[v]) {
+                        p[v] = u;
+                        break;
+                    }
+                }
+            }
+        }
+    }
+}
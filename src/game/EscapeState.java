@@ -30,6 +30,25 @@ public interface EscapeState {
      */
     public Collection<Node> getVertices();
 
+    /**
+     * Return the tree of shortest paths from source to every node in the graph.
+     * Trees are cached, so asking again for the same source costs no search.
+     */
+    public ShortestPathTree getShortestPathTree(Node source);
+
+    /**
+     * Return the oracle that answers point-to-point shortest-path questions
+     * about the cavern (see ShortestPathOracle).
+     */
+    public ShortestPathOracle getShortestPathOracle();
+
+    /**
+     * Return an index of the gold left in the cavern, for finding the richest
+     * tiles overall or near a place without looking at every node.
+     * It is kept up to date as gold is picked up.
+     */
+    public GoldIndex getGoldIndex();
+
     /**
      * Change your current location n.
      * Throw an IllegalArgumentException if n is not a neihgbor of your current location.
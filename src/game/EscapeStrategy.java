@@ -0,0 +1,12 @@
+package game;
+
+/**
+ * An implementation leaves the cavern, collecting gold, during the escape phase
+ * of a game. See {@code student.Explorer.escape} for the rules.
+ */
+public interface EscapeStrategy {
+    /**
+     * Escape from the cavern through state and return while standing at the exit.
+     */
+    void escape(EscapeState state);
+}
@@ -0,0 +1,12 @@
+package game;
+
+/**
+ * An implementation finds the orb during the explore phase of a game.
+ * See {@code student.Explorer.explore} for the rules.
+ */
+public interface ExploreStrategy {
+    /**
+     * Explore the cavern through state and return while standing on the orb.
+     */
+    void explore(ExplorationState state);
+}
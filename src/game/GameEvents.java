@@ -0,0 +1,404 @@
+package game;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An instance delivers the events of a game to its GameListeners, each on a
+ * daemon thread of its own, so that the thread playing the game only ever
+ * writes a few primitives into a buffer and goes on.
+ * <p>
+ * Each listener has a ring buffer of events, allocated when it is added, with
+ * one producer (the game) and one consumer (the listener's thread). An event is
+ * a kind and two longs, plus an object for the rare events that carry one (a
+ * cavern or a message), written into preallocated parallel arrays; the two
+ * threads coordinate through a sequence number each and no locks, and nothing
+ * is allocated per event. When a listener falls so far behind that its buffer
+ * is full, what happens to a new event depends on the listener's BackPressure.
+ * Phase changes, errors and the taking of gold from a tile are never dropped
+ * or merged: they wait for room whatever the policy. A listener that throws
+ * is reported and goes on getting events; should its thread die all the same,
+ * events that would wait for it are counted as missed instead.
+ * <p>
+ * The publishing methods must be called by one thread at a time, as the
+ * methods of a GameState are.
+ */
+public final class GameEvents {
+    /**
+     * What to do with an event for a listener whose buffer is full.
+     */
+    public enum BackPressure {
+        /**
+         * Wait until the listener has made room: nothing is lost, but the game
+         * runs no faster than the listener once it is a buffer behind.
+         */
+        BLOCK,
+        /**
+         * Throw the event away.
+         */
+        DROP,
+        /**
+         * Keep only the latest event of each kind that does not fit, and deliver
+         * it when there is room again, so the listener skips to the current state.
+         */
+        COALESCE
+    }
+
+    /**
+     * The number of events a listener may fall behind, unless another is given
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * How long (ns) the game sleeps while waiting for a listener to make room
+     */
+    private static final long BLOCK_PARK_NANOS = 50_000;
+
+    // The kinds of event. The first are the ones that may be merged by COALESCE.
+    private static final int MOVED = 0;
+    private static final int BONUS = 1;
+    private static final int TIME = 2;
+    private static final int GOLD = 3;
+    private static final int PHASE = 4;
+    private static final int ERROR = 5;
+    private static final int TAKEN = 6;
+    private static final int MERGEABLE_KINDS = 4;
+
+    private Subscription[] subscriptions = new Subscription[0];
+    private boolean closed;
+
+    /**
+     * Deliver the events published from now on to listener, which falls at
+     * most DEFAULT_CAPACITY events behind and then applies policy.
+     */
+    public void subscribe(GameListener listener, BackPressure policy) {
+        subscribe(listener, policy, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Deliver the events published from now on to listener, which falls at
+     * most capacity events behind and then applies policy. Do nothing if this
+     * instance has been closed.
+     * Throw an IllegalArgumentException if capacity < 1.
+     */
+    public void subscribe(GameListener listener, BackPressure policy, int capacity) {
+        if (closed) {
+            return;
+        }
+        if (capacity < 1) {
+            throw new IllegalArgumentException("subscribe: the capacity must be positive");
+        }
+        Subscription s = new Subscription(listener, policy, capacity);
+        subscriptions = Arrays.copyOf(subscriptions, subscriptions.length + 1);
+        subscriptions[subscriptions.length - 1] = s;
+        s.consumer.start();
+    }
+
+    /**
+     * Return true iff there is a listener, that is, iff publishing an event
+     * does anything (so that a caller need not compute its values otherwise).
+     */
+    public boolean hasListeners() {
+        return !closed && subscriptions.length > 0;
+    }
+
+    /**
+     * Return the number of events that listeners have missed: thrown away by
+     * DROP, overtaken by a later event of the same kind under COALESCE, or
+     * left undelivered because a listener's thread died.
+     */
+    public long getMissedEvents() {
+        long missed = 0;
+        for (Subscription s : subscriptions) {
+            missed += s.missed;
+        }
+        return missed;
+    }
+
+    /**
+     * Publish: a phase started in cavern (see GameListener.phaseStarted).
+     */
+    void phaseStarted(Cavern cavern, boolean escaping, int timeRemaining) {
+        publish(PHASE, escaping ? 1 : 0, timeRemaining, cavern);
+    }
+
+    /**
+     * Publish: the explorer moved to (row, col).
+     */
+    void moved(int row, int col) {
+        publish(MOVED, row, col, null);
+    }
+
+    /**
+     * Publish: the bonus multiplier is now bonus.
+     */
+    void bonusChanged(double bonus) {
+        publish(BONUS, Double.doubleToRawLongBits(bonus), 0, null);
+    }
+
+    /**
+     * Publish: the time remaining is now timeRemaining.
+     */
+    void timeRemainingChanged(int timeRemaining) {
+        publish(TIME, timeRemaining, 0, null);
+    }
+
+    /**
+     * Publish: the gold on the tile at (row, col) has been taken.
+     */
+    void goldTaken(int row, int col) {
+        publish(TAKEN, row, col, null);
+    }
+
+    /**
+     * Publish: the gold collected is now goldCollected and the score score.
+     */
+    void goldChanged(int goldCollected, int score) {
+        publish(GOLD, goldCollected, score, null);
+    }
+
+    /**
+     * Publish: the solver did something wrong, described by message.
+     */
+    void error(String message) {
+        publish(ERROR, 0, 0, message);
+    }
+
+    /**
+     * Hand every listener whatever it has not yet been given (waiting for room
+     * if need be) and let its thread end once it has dealt with it all. Events
+     * published afterwards are ignored.
+     */
+    void close() {
+        for (Subscription s : subscriptions) {
+            s.close();
+        }
+        closed = true;
+    }
+
+    /**
+     * Give the event (kind, a, b, ref) to every listener.
+     */
+    private void publish(int kind, long a, long b, Object ref) {
+        for (Subscription s : subscriptions) {
+            s.publish(kind, a, b, ref);
+        }
+    }
+
+    /**
+     * One listener, its ring buffer and its thread. The fields the game's thread
+     * uses alone (nextTail, knownHead, the pending events and missed) are plain,
+     * the sequence numbers shared with the listener's thread atomic.
+     */
+    private static final class Subscription implements Runnable {
+        final GameListener listener;
+        final BackPressure policy;
+        final Thread consumer;
+        final int mask;
+        final int capacity;
+        final int[] kinds;
+        final long[] as;
+        final long[] bs;
+        final Object[] refs;
+        final AtomicLong head = new AtomicLong();  // the sequence number of the next event to deliver
+        final AtomicLong tail = new AtomicLong();  // the sequence number of the next event to publish
+        volatile boolean waiting;                  // true: the consumer is parked or about to park
+        volatile boolean closed;
+
+        long nextTail;      // tail, as the producer knows it
+        long knownHead;     // a value head had, no larger than it is now
+        long missed;
+        final boolean[] pending = new boolean[MERGEABLE_KINDS]; // COALESCE: the events that did not fit
+        final long[] pendingA = new long[MERGEABLE_KINDS];
+        final long[] pendingB = new long[MERGEABLE_KINDS];
+        int pendingCount;
+
+        Subscription(GameListener listener, BackPressure policy, int capacity) {
+            this.listener = listener;
+            this.policy = policy;
+            int size = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+            this.capacity = capacity;
+            mask = size - 1;
+            kinds = new int[size];
+            as = new long[size];
+            bs = new long[size];
+            refs = new Object[size];
+            consumer = new Thread(this, "game-events-" + listener.getClass().getSimpleName());
+            consumer.setDaemon(true);
+        }
+
+        /**
+         * Give the event (kind, a, b, ref) to the listener according to the policy.
+         */
+        void publish(int kind, long a, long b, Object ref) {
+            if (closed) {
+                return;
+            }
+            if (kind >= MERGEABLE_KINDS) {
+                flushPending(true);
+                put(kind, a, b, ref);
+                return;
+            }
+            switch (policy) {
+                case BLOCK:
+                    put(kind, a, b, ref);
+                    break;
+                case DROP:
+                    if (!offer(kind, a, b, ref)) {
+                        missed++;
+                    }
+                    break;
+                case COALESCE:
+                    flushPending(false);
+                    if (pendingCount > 0 || !offer(kind, a, b, ref)) {
+                        if (pending[kind]) {
+                            missed++;
+                        } else {
+                            pending[kind] = true;
+                            pendingCount++;
+                        }
+                        pendingA[kind] = a;
+                        pendingB[kind] = b;
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("Unexpected back-pressure policy " + policy);
+            }
+        }
+
+        /**
+         * Put the pending events into the buffer, as far as there is room, or
+         * all of them (waiting for room) if block.
+         */
+        void flushPending(boolean block) {
+            for (int k = 0; k < MERGEABLE_KINDS && pendingCount > 0; k++) {
+                if (pending[k]) {
+                    if (block) {
+                        put(k, pendingA[k], pendingB[k], null);
+                    } else if (!offer(k, pendingA[k], pendingB[k], null)) {
+                        return;
+                    }
+                    pending[k] = false;
+                    pendingCount--;
+                }
+            }
+        }
+
+        /**
+         * Add the event (kind, a, b, ref) to the buffer, waiting for room if
+         * need be. If the consumer has died, so that room will never be made,
+         * count the event as missed instead.
+         */
+        void put(int kind, long a, long b, Object ref) {
+            while (!offer(kind, a, b, ref)) {
+                if (!consumer.isAlive()) {
+                    missed++;
+                    return;
+                }
+                LockSupport.parkNanos(BLOCK_PARK_NANOS);
+            }
+        }
+
+        /**
+         * Add the event (kind, a, b, ref) to the buffer and return true, or
+         * return false if the buffer is full.
+         */
+        boolean offer(int kind, long a, long b, Object ref) {
+            long t = nextTail;
+            if (t - knownHead >= capacity) {
+                knownHead = head.get();
+                if (t - knownHead >= capacity) {
+                    return false;
+                }
+            }
+            int i = (int) t & mask;
+            kinds[i] = kind;
+            as[i] = a;
+            bs[i] = b;
+            refs[i] = ref;
+            nextTail = t + 1;
+            tail.set(nextTail); // a volatile write, so that the check of waiting below cannot be reordered before it
+            if (waiting) {
+                LockSupport.unpark(consumer);
+            }
+            return true;
+        }
+
+        /**
+         * Deliver everything still to come, then stop the consumer.
+         */
+        void close() {
+            flushPending(true);
+            closed = true;
+            LockSupport.unpark(consumer);
+        }
+
+        /**
+         * The consumer: deliver events as they arrive until closed and drained.
+         */
+        @Override
+        public void run() {
+            while (true) {
+                long h = head.get();
+                if (h == tail.get()) {
+                    if (closed && h == tail.get()) {
+                        return;
+                    }
+                    waiting = true;
+                    if (h == tail.get() && !closed) {
+                        LockSupport.park(this);
+                    }
+                    waiting = false;
+                    continue;
+                }
+                int i = (int) h & mask;
+                int kind = kinds[i];
+                long a = as[i];
+                long b = bs[i];
+                Object ref = refs[i];
+                refs[i] = null;
+                head.set(h + 1);
+                try {
+                    deliver(kind, a, b, ref);
+                } catch (Throwable e) {
+                    // A faulty listener must not stop the others, nor its own later
+                    // events; an Error would otherwise end this thread and leave the
+                    // game waiting for room that is never made.
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        /**
+         * Call the method of the listener for the event (kind, a, b, ref).
+         */
+        private void deliver(int kind, long a, long b, Object ref) {
+            switch (kind) {
+                case MOVED:
+                    listener.moved((int) a, (int) b);
+                    break;
+                case BONUS:
+                    listener.bonusChanged(Double.longBitsToDouble(a));
+                    break;
+                case TIME:
+                    listener.timeRemainingChanged((int) a);
+                    break;
+                case GOLD:
+                    listener.goldChanged((int) a, (int) b);
+                    break;
+                case TAKEN:
+                    listener.goldTaken((int) a, (int) b);
+                    break;
+                case PHASE:
+                    listener.phaseStarted((Cavern) ref, a != 0, (int) b);
+                    break;
+                case ERROR:
+                    listener.error((String) ref);
+                    break;
+                default:
+                    throw new IllegalStateException("Unexpected event kind " + kind);
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package game;
+
+/**
+ * An instance observes a game as it is played: a GUI, a recorder of replays or
+ * a collector of metrics. A game publishes what happens through GameEvents,
+ * which calls the methods of each listener on a thread of the listener's own,
+ * in the order the events happened, so a listener may be slow without slowing
+ * the solver down (how far it may fall behind is set by the
+ * GameEvents.BackPressure it was added with).
+ * <p>
+ * All methods do nothing unless overridden.
+ */
+public interface GameListener {
+    /**
+     * A phase has started in cavern, the escape cavern iff escaping, with
+     * timeRemaining steps to complete it (0 when exploring).
+     */
+    default void phaseStarted(Cavern cavern, boolean escaping, int timeRemaining) {
+    }
+
+    /**
+     * The explorer has moved to the tile at (row, col).
+     */
+    default void moved(int row, int col) {
+    }
+
+    /**
+     * The bonus multiplier is now bonus.
+     */
+    default void bonusChanged(double bonus) {
+    }
+
+    /**
+     * The time remaining to escape is now timeRemaining.
+     */
+    default void timeRemainingChanged(int timeRemaining) {
+    }
+
+    /**
+     * The gold on the tile at (row, col) has been taken. This event is never
+     * dropped or merged, whatever the listener's BackPressure, and comes just
+     * before the goldChanged it causes.
+     */
+    default void goldTaken(int row, int col) {
+    }
+
+    /**
+     * The gold collected is now goldCollected, and the score score.
+     */
+    default void goldChanged(int goldCollected, int score) {
+    }
+
+    /**
+     * The solver did something wrong, described by message.
+     */
+    default void error(String message) {
+    }
+}
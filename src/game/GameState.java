@@ -1,17 +1,16 @@
 package game;
 
 import gui.GUI;
-import student.Explorer;
 
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Optional;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import static game.Constants.EXTRA_TIME_FACTOR;
 import static game.Constants.MAX_BONUS;
@@ -23,12 +22,27 @@ import static game.Constants.MIN_ROWS;
 import static game.Constants.NO_BONUS_LENGTH;
 
 public class GameState implements ExplorationState, EscapeState {
+    /**
+     * How often (ms) the thread running a phase with a time budget is checked
+     */
+    private static final long POLL_MILLIS = 10;
+    /**
+     * How long (ms) a solver that has run out of time may take to make its next
+     * call into the game before its thread is abandoned
+     */
+    private static final long GRACE_MILLIS = 1000;
 
     private final Cavern exploreCavern;
-    private final Cavern escapeCavern;
-    private final Explorer explorer;
-    private final Optional<GUI> gui;
+    private final CompletableFuture<Cavern> pendingEscapeCavern; // may still be being generated
+    private Cavern escapeCavern;    // null until the escape phase starts
+    private final Solver solver;
+    private final ExploreStrategy exploreStrategy;
+    private final EscapeStrategy escapeStrategy;
+    private final GameEvents events = new GameEvents();
     private final long seed;
+    private boolean quiet = false; // true: do not print the results of the game
+    private Budget exploreBudget = Budget.UNLIMITED;
+    private Budget escapeBudget = Budget.UNLIMITED;
 
     private Node position;
     private int stepsTaken;
@@ -39,14 +53,30 @@ public class GameState implements ExplorationState, EscapeState {
     private boolean escapeSucceeded = false;
     private boolean exploreErrored = false;
     private boolean escapeErrored = false;
-    private int minTimeToExplore;
+    private boolean exploreTimedOut = false;
+    private boolean escapeTimedOut = false;
+    private int minTimeToExplore;   // computed when the explore phase starts
+
+    private Budget budget = Budget.UNLIMITED; // the budget of the current phase
+    private int phaseMoves;                   // the moves made in the current phase
+    private volatile boolean expired;         // true: the current phase has used up its budget
+    private long solverCpuNanos = 0;
+    private long solverAllocatedBytes = 0;    // -1 if unknown
 
     public GameState(Path exploreCavernPath, Path escapeCavernPath) throws IOException {
-        exploreCavern = Cavern.deserialize(Files.readAllLines(exploreCavernPath));
-        minTimeToExplore = exploreCavern.minPathLengthToTarget(exploreCavern.getEntrance());
-        escapeCavern = Cavern.deserialize(Files.readAllLines(escapeCavernPath));
+        this(exploreCavernPath, escapeCavernPath, Solvers.find(Solvers.DEFAULT));
+    }
 
-        explorer = new Explorer();
+    /**
+     * Constructor: an instance on the caverns in the given files, played by solver, with a GUI.
+     */
+    public GameState(Path exploreCavernPath, Path escapeCavernPath, Solver solver) throws IOException {
+        exploreCavern = CavernReader.read(exploreCavernPath);
+        pendingEscapeCavern = CompletableFuture.completedFuture(CavernReader.read(escapeCavernPath));
+
+        this.solver = solver;
+        exploreStrategy = solver.newExploreStrategy();
+        escapeStrategy = solver.newEscapeStrategy();
 
         position = exploreCavern.getEntrance();
         stepsTaken = 0;
@@ -56,67 +86,184 @@ public class GameState implements ExplorationState, EscapeState {
         seed = -1;
 
         stage = Stage.EXPLORE;
-        gui = Optional.of(new GUI(exploreCavern, position.getTile().getRow(), position.getTile().getColumn(), 0));
+        events.subscribe(new GUI(exploreCavern, position.getTile().getRow(), position.getTile().getColumn(), 0),
+                GameEvents.BackPressure.BLOCK);
     }
 
     /**
-     * Constructor: a random instance with a GUI only if useGUI is true.
+     * Return a random instance played by solver, with a GUI only if useGUI is true,
+     * which falls behind the game according to guiBackPressure.
+     * The randomness is based on seed. The escape cavern is generated in the
+     * background while the explore phase is played.
      */
-    private GameState(boolean useGui) {
-        this((new Random()).nextLong(), useGui);   // dodgy code - should reuse the random number
+    private static GameState newGame(long seed, Solver solver, boolean useGui,
+                                     GameEvents.BackPressure guiBackPressure) {
+        Pair<Cavern, CompletableFuture<Cavern>> caverns = digCavernsAsync(seed);
+        GameState state = new GameState(caverns.getFirst(), caverns.getSecond(), seed, solver, false);
+        if (useGui) {
+            state.addListener(state.newGui(), guiBackPressure);
+        }
+        return state;
     }
 
     /**
-     * Constructor: a random instance with a GUI only if useGUI is true.
-     * The randomness is based on seed.
+     * Constructor: an instance on the explore and escape caverns in caverns,
+     * which were generated from seed, played by solver, with a GUI only if useGUI is true.
      */
-    private GameState(long seed, boolean useGui) {
-        Random rand = new Random(seed);
-        int ROWS = rand.nextInt(MAX_ROWS - MIN_ROWS + 1) + MIN_ROWS;
-        int COLS = rand.nextInt(MAX_COLS - MIN_COLS + 1) + MIN_COLS;
-        exploreCavern = Cavern.digExploreCavern(ROWS, COLS, rand);
-        minTimeToExplore = exploreCavern.minPathLengthToTarget(exploreCavern.getEntrance());
-        Tile orbTile = exploreCavern.getTarget().getTile();
-        escapeCavern = Cavern.digEscapeCavern(ROWS, COLS, orbTile.getRow(), orbTile.getColumn(), rand);
+    GameState(Pair<Cavern, Cavern> caverns, long seed, Solver solver, boolean useGui) {
+        this(caverns.getFirst(), CompletableFuture.completedFuture(caverns.getSecond()), seed, solver, useGui);
+    }
+
+    /**
+     * Constructor: an instance on explore cavern exploreCavern and the escape
+     * cavern that escapeCavern completes with, which were generated from seed,
+     * played by solver, with a GUI only if useGUI is true.
+     */
+    private GameState(Cavern exploreCavern, CompletableFuture<Cavern> escapeCavern, long seed,
+                      Solver solver, boolean useGui) {
+        this.exploreCavern = exploreCavern;
+        pendingEscapeCavern = escapeCavern;
 
         position = exploreCavern.getEntrance();
         stepsTaken = 0;
         timeRemaining = Integer.MAX_VALUE;
         goldCollected = 0;
 
-        explorer = new Explorer();
+        this.solver = solver;
+        exploreStrategy = solver.newExploreStrategy();
+        escapeStrategy = solver.newEscapeStrategy();
         stage = Stage.EXPLORE;
 
         this.seed = seed;
 
         if (useGui) {
-            gui = Optional.of(new GUI(exploreCavern, position.getTile().getRow(),
-                    position.getTile().getColumn(), seed));
-        } else {
-            gui = Optional.empty();
+            addListener(newGui(), GameEvents.BackPressure.BLOCK);
         }
     }
 
+    /**
+     * Return a new GUI showing this game as it is now.
+     */
+    private GUI newGui() {
+        return new GUI(exploreCavern, position.getTile().getRow(), position.getTile().getColumn(), seed);
+    }
+
+    /**
+     * Let listener observe the rest of this game on a thread of its own,
+     * applying policy when it falls DEFAULT_CAPACITY events behind.
+     */
+    public void addListener(GameListener listener, GameEvents.BackPressure policy) {
+        events.subscribe(listener, policy);
+    }
+
+    /**
+     * Return the (explore, escape) caverns of the game with the given seed.
+     * The size of the caverns and both caverns are drawn from one Random
+     * seeded with seed, so a seed always gives the same game.
+     */
+    static Pair<Cavern, Cavern> digCaverns(long seed) {
+        Pair<Cavern, CompletableFuture<Cavern>> caverns = digCavernsAsync(seed);
+        return new Pair<>(caverns.getFirst(), caverns.getSecond().join());
+    }
+
+    /**
+     * Return the explore cavern of the game with the given seed and a future
+     * that completes with its escape cavern, which is generated asynchronously
+     * (in the common fork-join pool).
+     * The escape cavern depends on the explore cavern and its random numbers
+     * are drawn from the same Random, after the explore cavern's, so the game
+     * is the same as digCaverns(seed) however the generation is scheduled.
+     */
+    static Pair<Cavern, CompletableFuture<Cavern>> digCavernsAsync(long seed) {
+        Random rand = new Random(seed);
+        int ROWS = rand.nextInt(MAX_ROWS - MIN_ROWS + 1) + MIN_ROWS;
+        int COLS = rand.nextInt(MAX_COLS - MIN_COLS + 1) + MIN_COLS;
+        Cavern exploreCavern = Cavern.digExploreCavern(ROWS, COLS, rand);
+        Tile orbTile = exploreCavern.getTarget().getTile();
+        // From here on rand is used by the generating thread only.
+        CompletableFuture<Cavern> escapeCavern = CompletableFuture.supplyAsync(
+                () -> Cavern.digEscapeCavern(ROWS, COLS, orbTile.getRow(), orbTile.getColumn(), rand));
+        return new Pair<>(exploreCavern, escapeCavern);
+    }
+
     public static int runNewGame(long seed, boolean useGui) {
-        GameState state;
-        if (seed != 0) {
-            state = new GameState(seed, useGui);
-        } else {
-            state = new GameState(useGui);
-        }
+        return runNewGame(seed, useGui, Solvers.find(Solvers.DEFAULT));
+    }
+
+    /**
+     * Run a new game with the given seed (or a random one if seed is 0), played by
+     * solver, with a GUI only if useGui is true, and return the score.
+     */
+    public static int runNewGame(long seed, boolean useGui, Solver solver) {
+        return runNewGame(seed, useGui, solver, Budget.UNLIMITED);
+    }
+
+    /**
+     * Run a new game with the given seed (or a random one if seed is 0), played by
+     * solver within budget in each phase, with a GUI only if useGui is true, and
+     * return the score.
+     */
+    public static int runNewGame(long seed, boolean useGui, Solver solver, Budget budget) {
+        return runNewGame(seed, useGui, solver, budget, GameEvents.BackPressure.BLOCK);
+    }
+
+    /**
+     * Run a new game with the given seed (or a random one if seed is 0), played by
+     * solver within budget in each phase, with a GUI only if useGui is true, and
+     * return the score. When the GUI falls behind the game, apply guiBackPressure.
+     */
+    public static int runNewGame(long seed, boolean useGui, Solver solver, Budget budget,
+                                 GameEvents.BackPressure guiBackPressure) {
+        GameState state = newGame(seed != 0 ? seed : new Random().nextLong(), solver, useGui, guiBackPressure);
+        state.setBudgets(budget, budget);
         System.out.println("Seed : " + state.seed);
         state.run();
         return state.getScore();
     }
 
+    /**
+     * Run the game stored at index in corpus, played by solver within budget in
+     * each phase, with a GUI only if useGui is true, and return the score.
+     * The caverns are loaded from the corpus rather than generated, so only the
+     * solver's own time is spent.
+     */
+    public static int runNewGame(CavernCorpus corpus, int index, boolean useGui, Solver solver,
+                                 Budget budget) throws IOException {
+        GameState state = new GameState(corpus.load(index), corpus.getSeed(index), solver, useGui);
+        state.setBudgets(budget, budget);
+        System.out.println("Seed : " + state.seed);
+        state.run();
+        return state.getScore();
+    }
+
+    /**
+     * Limit the explore phase of this game to explore and the escape phase to escape.
+     */
+    public void setBudgets(Budget explore, Budget escape) {
+        exploreBudget = explore;
+        escapeBudget = escape;
+    }
+
+    /**
+     * Play this game to the end without printing its results.
+     */
+    void runQuietly() {
+        quiet = true;
+        run();
+    }
+
     /**
      * Run the game: first find the Orb and then escape.
      */
     private void run() {
         // TODO: In the error cases we should really pop something up!
-        explore();
-        if (!exploreSucceeded) return;
-        escape();
+        try {
+            explore();
+            if (!exploreSucceeded) return;
+            escape();
+        } finally {
+            events.close();
+        }
     }
 
     void explore() {
@@ -124,19 +271,24 @@ public class GameState implements ExplorationState, EscapeState {
         stepsTaken = 0;
         exploreSucceeded = false;
         position = exploreCavern.getEntrance();
-        gui.ifPresent((g) -> g.setLighting(false));
-        gui.ifPresent((g) -> g.updateCavern(exploreCavern, 0));
-        gui.ifPresent((g) -> g.moveTo(position));
+        // Computed here rather than when the bonus is first needed, which may be
+        // in the solver's phase and would be charged to its budget.
+        minTimeToExplore = exploreCavern.minPathLengthToTarget(position);
+        events.phaseStarted(exploreCavern, false, 0);
+        events.moved(position.getTile().getRow(), position.getTile().getColumn());
 
         try {
-            explorer.explore(this);
+            runPhase("explore", () -> exploreStrategy.explore(this), exploreBudget);
             if (position.equals(exploreCavern.getTarget())) {
                 exploreSucceeded = true;
             } else {
-                output(gui, "Your solution to explore returned at the wrong location.");
+                output("Your solution to explore returned at the wrong location.");
             }
+        } catch (BudgetExceededException e) {
+            output("Your solution to explore exceeded its budget: " + exploreBudget);
+            exploreTimedOut = true;
         } catch (Throwable t) {
-            output(gui, "Your code caused an error  during the explore phase. Please see console output.");
+            output("Your code caused an error  during the explore phase. Please see console output.");
             System.err.println("We will move on to the escape phase anyway, but your solution is not correct!");
             System.err.println("Here is the error that occurred.");
             t.printStackTrace();
@@ -146,40 +298,150 @@ public class GameState implements ExplorationState, EscapeState {
 
     void escape() {
         stage = Stage.ESCAPE;
+        try {
+            escapeCavern = pendingEscapeCavern.join();
+        } catch (CompletionException e) {
+            output("The escape cavern could not be generated. Please see console output.");
+            e.getCause().printStackTrace();
+            escapeErrored = true;
+            return;
+        }
         Tile orbTile = exploreCavern.getTarget().getTile();
         position = escapeCavern.getNodeAt(orbTile.getRow(), orbTile.getColumn());
         if (exploreSucceeded) {
             timeRemaining = computeTimeToEscape();
         } else {
             timeRemaining = escapeCavern.minPathLengthToTarget(position);
-            gui.ifPresent((g) -> g.moveTo(position));
+            events.moved(position.getTile().getRow(), position.getTile().getColumn());
         }
 
-        gui.ifPresent((g) -> g.setLighting(true));
-        gui.ifPresent((g) -> g.updateCavern(escapeCavern, timeRemaining));
+        events.phaseStarted(escapeCavern, true, timeRemaining);
 
         try {
-            explorer.escape(this);
+            runPhase("escape", () -> escapeStrategy.escape(this), escapeBudget);
             if (position.equals(escapeCavern.getTarget())) {
                 escapeSucceeded = true;
             }
         } catch (OutOfTimeException e) {
-            output(gui, "Your solution to escape ran out of steps before returning!");
+            output("Your solution to escape ran out of steps before returning!");
+        } catch (BudgetExceededException e) {
+            output("Your solution to escape exceeded its budget: " + escapeBudget);
+            escapeTimedOut = true;
         } catch (Throwable t) {
-            output(gui, "Your code caused an error during the escape phase. Please see console output.");
+            output("Your code caused an error during the escape phase. Please see console output.");
             t.printStackTrace();
             escapeErrored = true;
         }
 
         if (!escapeSucceeded) {
-            output(gui, "Your solution to escape failed to end at the stairs. Your code is not correct!");
+            output("Your solution to escape failed to end at the stairs. Your code is not correct!");
         }
+        if (quiet) return;
         System.out.println("Gold collected   : " + getGoldCollected());
         DecimalFormat df = new DecimalFormat("#.##");
         System.out.println("Bonus multiplier : " + df.format(computeBonusFactor()));
         System.out.println("Score            : " + getScore());
     }
 
+    /**
+     * Run phase, a call into the solver, within budget, and rethrow whatever it throws.
+     * Throw a BudgetExceededException if phase used up its budget.
+     * <p>
+     * If budget limits time, phase runs on a daemon thread of its own, watched from
+     * this one. Once a limit has passed, that thread is interrupted and the solver's
+     * next call into the game throws a BudgetExceededException; a solver that makes
+     * no call within GRACE_MILLIS is left running on its thread, and can no longer
+     * change the game. The CPU time and allocation of phase are added to this game's.
+     */
+    private void runPhase(String name, Runnable phase, Budget budget) {
+        this.budget = budget;
+        phaseMoves = 0;
+        expired = false;
+
+        if (!budget.limitsTime()) {
+            long cpu = ThreadMetrics.cpuNanos();
+            long allocated = ThreadMetrics.allocatedBytes();
+            try {
+                phase.run();
+            } finally {
+                account(ThreadMetrics.cpuNanos() - cpu,
+                        allocated < 0 ? -1 : ThreadMetrics.allocatedBytes() - allocated);
+            }
+            return;
+        }
+
+        PhaseThread worker = new PhaseThread("solver-" + name + "-" + seed, phase);
+        long start = System.nanoTime();
+        long abandonAt = Long.MAX_VALUE;
+        worker.start();
+        try {
+            while (worker.isAlive()) {
+                worker.join(POLL_MILLIS);
+                long now = System.nanoTime();
+                if (!expired && isOverBudget(worker, budget, now - start)) {
+                    expired = true;
+                    worker.interrupt();
+                    abandonAt = now + GRACE_MILLIS * 1_000_000;
+                } else if (now > abandonAt) {
+                    account(ThreadMetrics.cpuNanos(worker.getId()), ThreadMetrics.allocatedBytes(worker.getId()));
+                    throw new BudgetExceededException();
+                }
+            }
+        } catch (InterruptedException e) {
+            expired = true;
+            worker.interrupt();
+            Thread.currentThread().interrupt();
+            throw new BudgetExceededException();
+        }
+
+        account(worker.cpuNanos, worker.allocatedBytes);
+        if (expired) {
+            throw new BudgetExceededException();
+        }
+        if (worker.thrown instanceof RuntimeException) {
+            throw (RuntimeException) worker.thrown;
+        }
+        if (worker.thrown instanceof Error) {
+            throw (Error) worker.thrown;
+        }
+        if (worker.thrown != null) {
+            throw new RuntimeException(worker.thrown);
+        }
+    }
+
+    /**
+     * Return true iff worker, which started elapsedNanos ns ago, has used up the
+     * time allowed by budget.
+     */
+    private static boolean isOverBudget(Thread worker, Budget budget, long elapsedNanos) {
+        if (budget.getWallMillis() > 0 && elapsedNanos > budget.getWallMillis() * 1_000_000) {
+            return true;
+        }
+        return budget.getCpuMillis() > 0
+                && ThreadMetrics.cpuNanos(worker.getId()) > budget.getCpuMillis() * 1_000_000;
+    }
+
+    /**
+     * Add cpuNanos ns of CPU time and allocatedBytes bytes of allocation (-1 if
+     * unknown) to what the solver has used in this game.
+     */
+    private void account(long cpuNanos, long allocatedBytes) {
+        solverCpuNanos += Math.max(cpuNanos, 0);
+        solverAllocatedBytes = (solverAllocatedBytes < 0 || allocatedBytes < 0
+                ? -1 : solverAllocatedBytes + allocatedBytes);
+    }
+
+    /**
+     * Throw a BudgetExceededException if the current phase has used up its time,
+     * or if move is true and the phase may make no more moves.
+     */
+    private void checkBudget(boolean move) {
+        if (expired || (move && !budget.allowsMove(phaseMoves))) {
+            expired = true;
+            throw new BudgetExceededException();
+        }
+    }
+
     /**
      * Return the time to escape
      */
@@ -209,13 +471,17 @@ public class GameState implements ExplorationState, EscapeState {
         if (stage != Stage.EXPLORE) {
             throw new IllegalStateException("moveTo(ID) can only be called while exploring!");
         }
+        checkBudget(true);
 
         for (Node n : position.getNeighbours()) {
             if (n.getId() == id) {
                 position = n;
                 stepsTaken++;
-                gui.ifPresent((g) -> g.updateBonus(computeBonusFactor()));
-                gui.ifPresent((g) -> g.moveTo(n));
+                phaseMoves++;
+                if (events.hasListeners()) {
+                    events.bonusChanged(computeBonusFactor());
+                    events.moved(n.getTile().getRow(), n.getTile().getColumn());
+                }
                 return;
             }
         }
@@ -230,6 +496,7 @@ public class GameState implements ExplorationState, EscapeState {
         if (stage != Stage.EXPLORE) {
             throw new IllegalStateException("getLocation() can only be called while exploring!");
         }
+        checkBudget(false);
 
         return position.getId();
     }
@@ -243,6 +510,7 @@ public class GameState implements ExplorationState, EscapeState {
         if (stage != Stage.EXPLORE) {
             throw new IllegalStateException("getNeighbours() can only be called while exploring!");
         }
+        checkBudget(false);
 
         Collection<NodeStatus> options = new ArrayList<>();
         for (Node n : position.getNeighbours()) {
@@ -265,6 +533,7 @@ public class GameState implements ExplorationState, EscapeState {
         if (stage != Stage.EXPLORE) {
             throw new IllegalStateException("getDistanceToTarget() can only be called while exploring!");
         }
+        checkBudget(false);
 
         return computeDistanceToTarget(position.getTile().getRow(), position.getTile().getColumn());
     }
@@ -275,6 +544,7 @@ public class GameState implements ExplorationState, EscapeState {
             throw new IllegalStateException("getCurrentNode: Error, " +
                     "current Node may not be accessed unless in ESCAPE");
         }
+        checkBudget(false);
         return position;
     }
 
@@ -284,6 +554,7 @@ public class GameState implements ExplorationState, EscapeState {
             throw new IllegalStateException("getEntrance: Error, " +
                     "current Node may not be accessed unless in ESCAPE");
         }
+        checkBudget(false);
         return escapeCavern.getTarget();
     }
 
@@ -293,9 +564,40 @@ public class GameState implements ExplorationState, EscapeState {
             throw new IllegalStateException("getVertices: Error, " +
                     "Vertices may not be accessed unless in ESCAPE");
         }
+        checkBudget(false);
         return Collections.unmodifiableSet(escapeCavern.getGraph());
     }
 
+    @Override
+    public ShortestPathTree getShortestPathTree(Node source) {
+        if (stage != Stage.ESCAPE) {
+            throw new IllegalStateException("getShortestPathTree: Error, " +
+                    "shortest paths may not be accessed unless in ESCAPE");
+        }
+        checkBudget(false);
+        return escapeCavern.getShortestPathTree(source);
+    }
+
+    @Override
+    public ShortestPathOracle getShortestPathOracle() {
+        if (stage != Stage.ESCAPE) {
+            throw new IllegalStateException("getShortestPathOracle: Error, " +
+                    "shortest paths may not be accessed unless in ESCAPE");
+        }
+        checkBudget(false);
+        return escapeCavern.getShortestPathOracle();
+    }
+
+    @Override
+    public GoldIndex getGoldIndex() {
+        if (stage != Stage.ESCAPE) {
+            throw new IllegalStateException("getGoldIndex: Error, " +
+                    "the gold index may not be accessed unless in ESCAPE");
+        }
+        checkBudget(false);
+        return escapeCavern.getGoldIndex();
+    }
+
     /**
      * Attempts to move the explorer from the current position to
      * the <tt>Node</tt> <tt>n</tt>. Throws an <tt>IllegalArgumentException</tt>
@@ -309,6 +611,7 @@ public class GameState implements ExplorationState, EscapeState {
         if (stage != Stage.ESCAPE) {
             throw new IllegalStateException("moveTo(Node) can only be called when escaping!");
         }
+        checkBudget(true);
         int distance = position.getEdge(n).length;
         if (timeRemaining - distance < 0) {
             throw new OutOfTimeException();
@@ -317,8 +620,11 @@ public class GameState implements ExplorationState, EscapeState {
         if (position.getNeighbours().contains(n)) {
             position = n;
             timeRemaining -= distance;
-            gui.ifPresent((g) -> g.updateTimeRemaining(timeRemaining));
-            gui.ifPresent((g) -> g.moveTo(n));
+            phaseMoves++;
+            if (events.hasListeners()) {
+                events.timeRemainingChanged(timeRemaining);
+                events.moved(n.getTile().getRow(), n.getTile().getColumn());
+            }
         } else {
             throw new IllegalArgumentException("moveTo: Node must be adjacent to position");
         }
@@ -328,11 +634,16 @@ public class GameState implements ExplorationState, EscapeState {
     public void pickUpGold() {
         if (stage != Stage.ESCAPE) {
             throw new IllegalStateException("pickUpGold() can only be called while escaping!");
-        } else if (position.getTile().getGold() <= 0) {
+        }
+        checkBudget(false);
+        if (position.getTile().getGold() <= 0) {
             throw new IllegalStateException("pickUpGold: Error, no gold on this tile");
         }
         goldCollected += position.getTile().takeGold();
-        gui.ifPresent((g) -> g.updateCoins(goldCollected, getScore()));
+        if (events.hasListeners()) {
+            events.goldTaken(position.getTile().getRow(), position.getTile().getColumn());
+            events.goldChanged(goldCollected, getScore());
+        }
     }
 
     @Override
@@ -340,6 +651,7 @@ public class GameState implements ExplorationState, EscapeState {
         if (stage != Stage.ESCAPE) {
             throw new IllegalStateException("getTimeRemaining() can only be called while escaping!");
         }
+        checkBudget(false);
         return timeRemaining;
     }
 
@@ -356,6 +668,13 @@ public class GameState implements ExplorationState, EscapeState {
         return (int) (computeBonusFactor() * goldCollected);
     }
 
+    /**
+     * Return the solver playing this game.
+     */
+    Solver getSolver() {
+        return solver;
+    }
+
     boolean getExploreSucceeded() {
         return exploreSucceeded;
     }
@@ -364,6 +683,28 @@ public class GameState implements ExplorationState, EscapeState {
         return escapeSucceeded;
     }
 
+    boolean getExploreTimedOut() {
+        return exploreTimedOut;
+    }
+
+    boolean getEscapeTimedOut() {
+        return escapeTimedOut;
+    }
+
+    /**
+     * Return the CPU time, in ns, the solver has used in this game.
+     */
+    long getSolverCpuNanos() {
+        return solverCpuNanos;
+    }
+
+    /**
+     * Return the number of bytes the solver has allocated in this game, or -1 if unknown.
+     */
+    long getSolverAllocatedBytes() {
+        return solverAllocatedBytes;
+    }
+
     boolean getExploreErrored() {
         return exploreErrored;
     }
@@ -372,9 +713,9 @@ public class GameState implements ExplorationState, EscapeState {
         return escapeErrored;
     }
 
-    private void output(Optional<GUI> gui, String s) {
+    private void output(String s) {
         System.err.println(s);
-        gui.ifPresent((g) -> g.displayError(s));
+        events.error(s);
     }
 
     private enum Stage {
@@ -384,4 +725,42 @@ public class GameState implements ExplorationState, EscapeState {
     @SuppressWarnings("serial")
     private static class OutOfTimeException extends RuntimeException {
     }
+
+    /**
+     * Thrown when a phase has used up its budget.
+     */
+    @SuppressWarnings("serial")
+    private static class BudgetExceededException extends RuntimeException {
+    }
+
+    /**
+     * A daemon thread that runs one phase of a game and records what it threw,
+     * its CPU time and its allocation.
+     */
+    private static class PhaseThread extends Thread {
+        private final Runnable phase;
+        private volatile Throwable thrown;
+        private volatile long cpuNanos = -1;
+        private volatile long allocatedBytes = -1;
+
+        private PhaseThread(String name, Runnable phase) {
+            super(name);
+            this.phase = phase;
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            long cpu = ThreadMetrics.cpuNanos();
+            long allocated = ThreadMetrics.allocatedBytes();
+            try {
+                phase.run();
+            } catch (Throwable t) {
+                thrown = t;
+            } finally {
+                cpuNanos = ThreadMetrics.cpuNanos() - cpu;
+                allocatedBytes = (allocated < 0 ? -1 : ThreadMetrics.allocatedBytes() - allocated);
+            }
+        }
+    }
 }
@@ -0,0 +1,351 @@
+package game;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An instance indexes the gold still lying in a cavern, so that the richest
+ * tiles can be found without looking at every node.
+ * <p>
+ * The open nodes holding gold are kept in a max-heap ordered by gold (ties go to
+ * the smaller id), with each node's position in the heap recorded so that it can
+ * be removed in O(log n) when its gold is taken. They are also bucketed by
+ * position in square blocks of the grid, each knowing the most gold left on any
+ * of its tiles; queries restricted to a region or radius visit only the blocks
+ * that overlap it and skip those that cannot improve the answer.
+ * <p>
+ * The index is kept up to date by the tiles themselves: taking the gold on a
+ * tile (Tile.takeGold) removes its node from the index, through the storage of
+ * the cavern (CavernStorage.setGoldIndex). The blocks hold every
+ * tile that started with gold, so that reset can put them all back.
+ */
+public class GoldIndex {
+    /**
+     * The number of rows and columns of tiles in a block
+     */
+    private static final int BLOCK = 16;
+
+    private final CavernStorage nodes; // the storage of the cavern, which gives the open node with each id
+    private final int[] gold;       // gold[i] is the gold left on node i
+    private final int[] heap;       // heap[0..size-1] is a max-heap of the ids of nodes with gold
+    private final int[] heapPos;    // heapPos[i] is the index of node i in heap, or -1
+    private int size;
+
+    private final int blockCols;    // the number of blocks in a row of blocks
+    private final int[] blockStart; // the nodes of block b are blockIds[blockStart[b] .. blockStart[b + 1] - 1]
+                                    // (all the nodes of the block that started with gold)
+    private final int[] blockIds;
+    private final int[] blockMax;   // blockMax[b] is the most gold left on a node of block b
+
+    /**
+     * Constructor: an index of the gold on the open nodes of storage s.
+     * The tiles of those nodes notify this index when their gold is taken.
+     */
+    /* package */ GoldIndex(CavernStorage s) {
+        nodes = s;
+        int n = s.size();
+        gold = new int[n];
+        heap = new int[n];
+        heapPos = new int[n];
+        blockCols = (s.getColumnCount() + BLOCK - 1) / BLOCK;
+        int blockRows = (s.getRowCount() + BLOCK - 1) / BLOCK;
+        blockStart = new int[blockRows * blockCols + 1];
+        blockMax = new int[blockRows * blockCols];
+
+        int goldTiles = 0;
+        for (int i = 0; i < n; i++) {
+            gold[i] = s.getGold(i);
+            heapPos[i] = -1;
+            if (s.getOriginalGold(i) > 0) {
+                int b = blockOf(s.getRow(i), s.getColumn(i));
+                blockStart[b + 1]++;
+                goldTiles++;
+                if (gold[i] > 0) {
+                    heap[size] = i;
+                    heapPos[i] = size++;
+                    blockMax[b] = Math.max(blockMax[b], gold[i]);
+                }
+            }
+        }
+        for (int k = size / 2 - 1; k >= 0; k--) {
+            bubbleDown(k);
+        }
+
+        for (int b = 0; b < blockMax.length; b++) {
+            blockStart[b + 1] += blockStart[b];
+        }
+        blockIds = new int[goldTiles];
+        int[] fill = new int[blockMax.length];
+        for (int i = 0; i < n; i++) {
+            if (s.getOriginalGold(i) > 0) {
+                int b = blockOf(s.getRow(i), s.getColumn(i));
+                blockIds[blockStart[b] + fill[b]++] = i;
+            }
+        }
+        s.setGoldIndex(this);
+    }
+
+    /**
+     * Return the number of tiles that still hold gold.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Return the node holding the most gold (the one with the smallest id among
+     * equals), or null if no gold is left.
+     */
+    public Node getMax() {
+        return size == 0 ? null : nodes.getNode(heap[0]);
+    }
+
+    /**
+     * Return the most gold left on any tile (0 if none is left).
+     */
+    public int getMaxGold() {
+        return size == 0 ? 0 : gold[heap[0]];
+    }
+
+    /**
+     * Return up to k nodes holding the most gold, richest first.
+     */
+    public List<Node> best(int k) {
+        return collect(k, 0, 0, Integer.MAX_VALUE, Integer.MAX_VALUE, 0, 0, -1);
+    }
+
+    /**
+     * Return up to k nodes holding the most gold within grid (Manhattan)
+     * distance radius of centre, richest first.
+     */
+    public List<Node> bestWithin(int k, Node centre, int radius) {
+        int r = centre.getTile().getRow();
+        int c = centre.getTile().getColumn();
+        return collect(k, r - radius, c - radius, r + radius, c + radius, r, c, radius);
+    }
+
+    /**
+     * Return up to k nodes holding the most gold in rows minRow..maxRow and
+     * columns minCol..maxCol, richest first.
+     */
+    public List<Node> bestInRegion(int k, int minRow, int minCol, int maxRow, int maxCol) {
+        return collect(k, minRow, minCol, maxRow, maxCol, 0, 0, -1);
+    }
+
+    /**
+     * Remove node id, whose gold has been taken, from this index.
+     */
+    /* package */ void remove(int id) {
+        int k = heapPos[id];
+        if (k < 0) {
+            return;
+        }
+        int taken = gold[id];
+        gold[id] = 0;
+        heapPos[id] = -1;
+        size--;
+        if (k < size) {
+            int moved = heap[size];
+            heap[k] = moved;
+            heapPos[moved] = k;
+            bubbleUp(k);
+            if (heapPos[moved] == k) {
+                bubbleDown(k);
+            }
+        }
+
+        int b = blockOf(nodes.getRow(id), nodes.getColumn(id));
+        if (taken == blockMax[b]) {
+            int max = 0;
+            for (int j = blockStart[b]; j < blockStart[b + 1]; j++) {
+                max = Math.max(max, gold[blockIds[j]]);
+            }
+            blockMax[b] = max;
+        }
+    }
+
+    /**
+     * Read the gold on every tile that started with gold again, after it has
+     * been put back (see Cavern.resetGold). Take time proportional to the
+     * number of those tiles.
+     */
+    /* package */ void reset() {
+        size = 0;
+        Arrays.fill(blockMax, 0);
+        for (int b = 0; b < blockMax.length; b++) {
+            for (int j = blockStart[b]; j < blockStart[b + 1]; j++) {
+                int id = blockIds[j];
+                gold[id] = nodes.getGold(id);
+                heapPos[id] = -1;
+                if (gold[id] > 0) {
+                    heap[size] = id;
+                    heapPos[id] = size++;
+                    blockMax[b] = Math.max(blockMax[b], gold[id]);
+                }
+            }
+        }
+        for (int k = size / 2 - 1; k >= 0; k--) {
+            bubbleDown(k);
+        }
+    }
+
+    /**
+     * Return up to k nodes holding the most gold in rows minRow..maxRow and
+     * columns minCol..maxCol and, if radius >= 0, within grid distance radius
+     * of (row, col), richest first.
+     */
+    private List<Node> collect(int k, int minRow, int minCol, int maxRow, int maxCol,
+                               int row, int col, int radius) {
+        if (k <= 0 || size == 0) {
+            return Collections.emptyList();
+        }
+        int blockRows = blockMax.length / blockCols;
+        int bRow0 = Math.max(minRow, 0) / BLOCK;
+        int bCol0 = Math.max(minCol, 0) / BLOCK;
+        int bRow1 = Math.min(maxRow / BLOCK, blockRows - 1);
+        int bCol1 = Math.min(maxCol / BLOCK, blockCols - 1);
+
+        // top[0..count-1] is a min-heap (worst on top) of the best nodes found so far.
+        int[] top = new int[Math.min(k, size)];
+        int count = 0;
+        for (int br = bRow0; br <= bRow1; br++) {
+            for (int bc = bCol0; bc <= bCol1; bc++) {
+                int b = br * blockCols + bc;
+                if (blockMax[b] == 0 || (count == top.length && blockMax[b] < gold[top[0]])) {
+                    continue;
+                }
+                if (radius >= 0 && blockDistance(br, bc, row, col) > radius) {
+                    continue;
+                }
+                for (int j = blockStart[b]; j < blockStart[b + 1]; j++) {
+                    int id = blockIds[j];
+                    if (gold[id] == 0) {
+                        continue;
+                    }
+                    int r = nodes.getRow(id);
+                    int c = nodes.getColumn(id);
+                    if (r < minRow || r > maxRow || c < minCol || c > maxCol
+                            || (radius >= 0 && Math.abs(r - row) + Math.abs(c - col) > radius)) {
+                        continue;
+                    }
+                    if (count < top.length) {
+                        top[count] = id;
+                        siftUpWorst(top, count++);
+                    } else if (richer(id, top[0])) {
+                        top[0] = id;
+                        siftDownWorst(top, 0, count);
+                    }
+                }
+            }
+        }
+
+        List<Node> result = new ArrayList<>(count);
+        for (int j = 0; j < count; j++) {
+            result.add(nodes.getNode(top[j]));
+        }
+        result.sort((a, b) -> richer((int) a.getId(), (int) b.getId()) ? -1 : 1);
+        return result;
+    }
+
+    /**
+     * Return the least grid distance from (row, col) to a tile of block (br, bc).
+     */
+    private static int blockDistance(int br, int bc, int row, int col) {
+        int r0 = br * BLOCK;
+        int c0 = bc * BLOCK;
+        int dr = (row < r0 ? r0 - row : Math.max(0, row - (r0 + BLOCK - 1)));
+        int dc = (col < c0 ? c0 - col : Math.max(0, col - (c0 + BLOCK - 1)));
+        return dr + dc;
+    }
+
+    /**
+     * Return the block of the tile at (row, col).
+     */
+    private int blockOf(int row, int col) {
+        return (row / BLOCK) * blockCols + col / BLOCK;
+    }
+
+    /**
+     * Return true iff node a comes before node b: it holds more gold, or as
+     * much and has the smaller id.
+     */
+    private boolean richer(int a, int b) {
+        return gold[a] > gold[b] || (gold[a] == gold[b] && a < b);
+    }
+
+    /**
+     * Bubble heap[k] up to its place in the max-heap.
+     */
+    private void bubbleUp(int k) {
+        int id = heap[k];
+        while (k > 0) {
+            int p = (k - 1) / 2;
+            if (!richer(id, heap[p])) {
+                break;
+            }
+            heap[k] = heap[p];
+            heapPos[heap[k]] = k;
+            k = p;
+        }
+        heap[k] = id;
+        heapPos[id] = k;
+    }
+
+    /**
+     * Bubble heap[k] down to its place in the max-heap.
+     */
+    private void bubbleDown(int k) {
+        int id = heap[k];
+        while (2 * k + 1 < size) {
+            int c = 2 * k + 1;
+            if (c + 1 < size && richer(heap[c + 1], heap[c])) {
+                c++;
+            }
+            if (!richer(heap[c], id)) {
+                break;
+            }
+            heap[k] = heap[c];
+            heapPos[heap[k]] = k;
+            k = c;
+        }
+        heap[k] = id;
+        heapPos[id] = k;
+    }
+
+    /**
+     * Bubble top[k] up to its place in the min-heap top (worst node on top).
+     */
+    private void siftUpWorst(int[] top, int k) {
+        int id = top[k];
+        while (k > 0) {
+            int p = (k - 1) / 2;
+            if (!richer(top[p], id)) {
+                break;
+            }
+            top[k] = top[p];
+            k = p;
+        }
+        top[k] = id;
+    }
+
+    /**
+     * Bubble top[k] down to its place in the min-heap top[0..count-1] (worst node on top).
+     */
+    private void siftDownWorst(int[] top, int k, int count) {
+        int id = top[k];
+        while (2 * k + 1 < count) {
+            int c = 2 * k + 1;
+            if (c + 1 < count && richer(top[c], top[c + 1])) {
+                c++;
+            }
+            if (!richer(id, top[c])) {
+                break;
+            }
+            top[k] = top[c];
+            k = c;
+        }
+        top[k] = id;
+    }
+}
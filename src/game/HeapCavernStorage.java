@@ -0,0 +1,176 @@
+package game;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * An instance holds a cavern as Node, Tile and Edge objects on the heap, as
+ * generated or read from a file. Questions by id are answered from the open
+ * nodes indexed by id and a CsrGraph of their edges, built once.
+ */
+/* package */ final class HeapCavernStorage implements CavernStorage {
+    private final Set<Node> graph;
+    private final Node[][] tiles;
+    private final Node[] openNodes; // openNodes[i] is the open node with id i
+    private final Node entrance;
+    private final Node target;
+    private final CsrGraph csr;
+    private Node[] goldNodes;       // the open nodes that started with gold, found on first use
+
+    /**
+     * Constructor: an instance holding graph g, laid out as grid t, with entrance
+     * e and target trgt.
+     * Preconditions: g and t represent the same graph (g contains all the open
+     * nodes of t and edges are along the grid), the ids of the nodes of g are
+     * 0..g.size()-1, and e and trgt are nodes of g.
+     */
+    HeapCavernStorage(Set<Node> g, Node[][] t, Node e, Node trgt) {
+        graph = Collections.unmodifiableSet(g);
+        tiles = t;
+        openNodes = new Node[g.size()];
+        for (Node n : g) {
+            openNodes[(int) n.getId()] = n;
+        }
+        entrance = e;
+        target = trgt;
+        csr = CsrGraph.of(openNodes);
+    }
+
+    @Override
+    public int getRowCount() {
+        return tiles.length;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return tiles[0].length;
+    }
+
+    @Override
+    public int size() {
+        return openNodes.length;
+    }
+
+    @Override
+    public Node getEntrance() {
+        return entrance;
+    }
+
+    @Override
+    public Node getTarget() {
+        return target;
+    }
+
+    @Override
+    public Set<Node> getGraph() {
+        return graph;
+    }
+
+    @Override
+    public Node getNode(int id) {
+        return openNodes[id];
+    }
+
+    @Override
+    public Node getNodeAt(int r, int c) {
+        return tiles[r][c];
+    }
+
+    @Override
+    public int getDegree(int id) {
+        return csr.offsets[id + 1] - csr.offsets[id];
+    }
+
+    @Override
+    public int getNeighbour(int id, int k) {
+        return csr.targets[csr.offsets[id] + k];
+    }
+
+    @Override
+    public int getEdgeWeight(int id, int k) {
+        return csr.weights[csr.offsets[id] + k];
+    }
+
+    @Override
+    public int getRow(int id) {
+        return openNodes[id].getTile().getRow();
+    }
+
+    @Override
+    public int getColumn(int id) {
+        return openNodes[id].getTile().getColumn();
+    }
+
+    @Override
+    public int getGold(int id) {
+        return openNodes[id].getTile().getGold();
+    }
+
+    @Override
+    public int getOriginalGold(int id) {
+        return openNodes[id].getTile().getOriginalGold();
+    }
+
+    @Override
+    public CsrGraph getCsrGraph() {
+        return csr;
+    }
+
+    @Override
+    public void setGoldIndex(GoldIndex index) {
+        for (int i = 0; i < openNodes.length; i++) {
+            Tile t = openNodes[i].getTile();
+            if (t.getOriginalGold() > 0) {
+                t.setGoldIndex(index, i);
+            }
+        }
+    }
+
+    /**
+     * Put back all the gold taken from the cavern. After the first call, this
+     * takes time proportional to the number of tiles that started with gold.
+     */
+    @Override
+    public void resetGold() {
+        if (goldNodes == null) {
+            goldNodes = Stream.of(openNodes).filter((n) -> n.getTile().getOriginalGold() > 0).toArray(Node[]::new);
+        }
+        for (Node n : goldNodes) {
+            n.getTile().restoreGold();
+        }
+    }
+
+    /**
+     * Return a copy of this storage: new nodes, tiles and edges with the same
+     * ids, positions, types, lengths and gold (taken or not). Take time
+     * proportional to the number of tiles and edges.
+     */
+    @Override
+    public HeapCavernStorage copy() {
+        int rows = getRowCount();
+        int cols = getColumnCount();
+        Map<Node, Node> isomorphism = new HashMap<>(2 * rows * cols);
+        Node[][] copiedTiles = new Node[rows][cols];
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                Node n = tiles[r][c];
+                copiedTiles[r][c] = new Node(n.getId(), n.getTile().copy());
+                isomorphism.put(n, copiedTiles[r][c]);
+            }
+        }
+
+        Set<Node> copiedGraph = new HashSet<>(2 * openNodes.length);
+        for (Node n : openNodes) {
+            Node m = isomorphism.get(n);
+            for (Edge e : n.getExits()) {
+                m.addEdge(new Edge(e, isomorphism));
+            }
+            copiedGraph.add(m);
+        }
+        return new HeapCavernStorage(copiedGraph, copiedTiles, isomorphism.get(entrance), isomorphism.get(target));
+    }
+}
@@ -0,0 +1,99 @@
+package game;
+
+import java.util.Arrays;
+
+/**
+ * An instance is a min-heap of (int item, int key) pairs held in two parallel
+ * arrays. An item may be added again with a smaller key instead of having
+ * its key decreased; callers skip the stale copies when they come out
+ * (by comparing the key with the best known one), which keeps the heap
+ * free of an index and cheap to clear between searches.
+ */
+/* package */ final class IntMinHeap {
+    private int[] items;
+    private int[] keys;
+    private int size;
+
+    /**
+     * Constructor: an empty heap with room for capacity pairs (it grows as needed).
+     */
+    IntMinHeap(int capacity) {
+        items = new int[Math.max(capacity, 4)];
+        keys = new int[items.length];
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    /**
+     * Return the smallest key in the heap.
+     * Precondition: the heap is not empty.
+     */
+    int minKey() {
+        return keys[0];
+    }
+
+    /**
+     * Return the item with the smallest key.
+     * Precondition: the heap is not empty.
+     */
+    int peek() {
+        return items[0];
+    }
+
+    /**
+     * Add item with the given key.
+     */
+    void add(int item, int key) {
+        if (size == items.length) {
+            items = Arrays.copyOf(items, 2 * size);
+            keys = Arrays.copyOf(keys, 2 * size);
+        }
+        int k = size++;
+        while (k > 0) {
+            int p = (k - 1) / 2;
+            if (keys[p] <= key) {
+                break;
+            }
+            items[k] = items[p];
+            keys[k] = keys[p];
+            k = p;
+        }
+        items[k] = item;
+        keys[k] = key;
+    }
+
+    /**
+     * Remove the pair with the smallest key and return its item.
+     * Precondition: the heap is not empty.
+     */
+    int poll() {
+        int result = items[0];
+        size--;
+        if (size > 0) {
+            int item = items[size];
+            int key = keys[size];
+            int k = 0;
+            while (2 * k + 1 < size) {
+                int c = 2 * k + 1;
+                if (c + 1 < size && keys[c + 1] < keys[c]) {
+                    c++;
+                }
+                if (keys[c] >= key) {
+                    break;
+                }
+                items[k] = items[c];
+                keys[k] = keys[c];
+                k = c;
+            }
+            items[k] = item;
+            keys[k] = key;
+        }
+        return result;
+    }
+}
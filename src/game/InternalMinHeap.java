@@ -1,15 +1,14 @@
 package game;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.Arrays;
 import java.util.NoSuchElementException;
 
 /**
- * An instance is a priority queue of elements of type E implemented as a min-heap.
+ * An instance is a priority queue of node ids implemented as a min-heap.
+ * The position of each id in the heap is kept in an array indexed by id,
+ * so no operation hashes or boxes anything.
  */
-class InternalMinHeap<E> {
+class InternalMinHeap {
 
     private int size; // number of elements in the priority queue (and heap)
 
@@ -21,19 +20,21 @@ class InternalMinHeap<E> {
      * 2. The children of each b[i] are b[2i+1] and b[2i+2].
      * 3. The parent of each b[i] (except b[0]) is b[(i-1)/2].
      * 4. The priority of the parent of each b[i] is <= the priority of b[i].
-     * 5. Priorities for the b[i] used for the comparison in point 4
-     * are given in map. map contains one entry for each element of
-     * the heap, and map and b have the same size.
-     * For each element e in the heap, the map entry contains in the
-     * Info object the priority of e and its index in b.
+     * 5. The priority of b[i] is priorities[i].
+     * 6. index[e] is the index of element e in b, or -1 if e is not in the heap.
      */
-    private List<E> b = new ArrayList<>();
-    private Map<E, Info> map = new HashMap<>();
+    private int[] b;
+    private double[] priorities;
+    private final int[] index;
 
     /**
-     * Constructor: an empty heap.
+     * Constructor: an empty heap with room for ids 0..capacity-1.
      */
-    public InternalMinHeap() {
+    public InternalMinHeap(int capacity) {
+        b = new int[16];
+        priorities = new double[16];
+        index = new int[capacity];
+        Arrays.fill(index, -1);
     }
 
     /**
@@ -51,127 +52,121 @@ class InternalMinHeap<E> {
     /**
      * Add e with priority p to the priority queue.
      * Throw an illegalArgumentException if e is already in the queue.
-     * The expected time is O(log N) and the worst-case time is O(N).
+     * The time is O(log N).
      */
-    public void add(E e, double p) throws IllegalArgumentException {
-        if (map.containsKey(e)) {
+    public void add(int e, double p) throws IllegalArgumentException {
+        if (index[e] >= 0) {
             throw new IllegalArgumentException("Cannot insert the same element twice");
         }
 
-        b.add(e);
-        map.put(e, new Info(size, p));
+        if (size == b.length) {
+            b = Arrays.copyOf(b, 2 * size);
+            priorities = Arrays.copyOf(priorities, 2 * size);
+        }
         size++;
-        bubbleUp(size - 1);
+        bubbleUp(size - 1, e, p);
     }
 
     /**
      * Return the element of the priority queue with lowest priority, without
      * changing the queue. This operation takes constant time.
-     * Throw a PCueException with message "priority queue is empty" if the
-     * priority queue is empty.
+     * Throw a NoSuchElementException if the priority queue is empty.
      */
-    public E peek() {
-        if (b.isEmpty()) {
+    public int peek() {
+        if (size == 0) {
             throw new NoSuchElementException();
         }
-        return b.get(0);
+        return b[0];
     }
 
     /**
      * Remove and return the element of the priority queue with lowest priority.
-     * The expected time is O(log n) and the worst-case time is O(N).
-     * Throw a PCueException with message "priority queue is empty" if the
-     * priority queue is empty.
+     * The time is O(log N).
+     * Throw a NoSuchElementException if the priority queue is empty.
      */
-    public E poll() {
-        E val = peek();
-        map.remove(val);
+    public int poll() {
+        int val = peek();
+        index[val] = -1;
         size--;
-        if (size <= 0) {
-            b.remove(0);
-        } else {
-            b.set(0, b.get(size));
-            b.remove(size);
-            bubbleDown(0);
+        int last = b[size];
+        double lastPriority = priorities[size];
+        if (size > 0) {
+            bubbleDown(0, last, lastPriority);
         }
         return val;
     }
 
     /**
      * Change the priority of element e to p.
-     * The expected time is O(log N) and the worst-case is time O(N).
+     * The time is O(log N).
      * Throw an illegalArgumentException if e is not in the priority queue.
      */
-    public void changePriority(E e, double p) {
-        Info info = map.get(e);
-        if (info == null) {
+    public void changePriority(int e, double p) {
+        int i = index[e];
+        if (i < 0) {
             throw new IllegalArgumentException("No element found: " + e);
         }
 
-        if (p < info.priority) {
-            info.priority = p;
-            bubbleUp(info.index);
+        if (p < priorities[i]) {
+            bubbleUp(i, e, p);
         } else {
-            info.priority = p;
-            bubbleDown(info.index);
+            bubbleDown(i, e, p);
         }
     }
 
 
     /**
-     * Bubble b[k] up in heap to its right place.
-     * Precondition: Every b[i] satisfies the heap property except perhaps
-     * k's priority < parent's priority
+     * Place val with priority p in the heap, starting at b[k] and bubbling it up
+     * to its right place.
+     * Precondition: b[k] is considered to be empty and every other b[i] satisfies
+     * the heap property.
      */
-    private void bubbleUp(int k) {
-        E val = b.get(k);
-        Info info = map.get(val);
-
+    private void bubbleUp(int k, int val, double p) {
         int i = k;
         while (i > 0) {
             int parentIdx = (i - 1) / 2;
-            E parentVal = b.get(parentIdx);
-            Info parentInfo = map.get(parentVal);
-
-            if (parentInfo.priority <= info.priority) {
+            if (priorities[parentIdx] <= p) {
                 break;
             }
-
-            b.set(i, parentVal);
-            parentInfo.index = i;
-
+            move(parentIdx, i);
             i = parentIdx;
         }
-        b.set(i, val);
-        info.index = i;
+        set(i, val, p);
     }
 
     /**
-     * Bubble b[k] down in heap until it finds the right place.
-     * Precondition: Every b[i] satisfies the heap property except perhaps
-     * k's priority > a child's priority.
+     * Place val with priority p in the heap, starting at b[k] and bubbling it down
+     * until it finds the right place.
+     * Precondition: b[k] is considered to be empty and every other b[i] satisfies
+     * the heap property.
      */
-    private void bubbleDown(int k) {
-        E val = b.get(k);
-        Info info = map.get(val);
-
+    private void bubbleDown(int k, int val, double p) {
         int i = k;
         while (2 * i + 1 < size) {
             int childIdx = getSmallerChild(i);
-            E childVal = b.get(childIdx);
-            Info childInfo = map.get(childVal);
-
-            if (info.priority <= childInfo.priority) {
+            if (p <= priorities[childIdx]) {
                 break;
             }
-
-            b.set(i, childVal);
-            childInfo.index = i;
-
+            move(childIdx, i);
             i = childIdx;
         }
-        b.set(i, val);
-        info.index = i;
+        set(i, val, p);
+    }
+
+    /**
+     * Move the element in b[from] to b[to].
+     */
+    private void move(int from, int to) {
+        set(to, b[from], priorities[from]);
+    }
+
+    /**
+     * Store val with priority p in b[i].
+     */
+    private void set(int i, int val, double p) {
+        b[i] = val;
+        priorities[i] = p;
+        index[val] = i;
     }
 
     /**
@@ -184,26 +179,6 @@ class InternalMinHeap<E> {
         if (size <= rightIdx) {
             return leftIdx;
         }
-
-        Info leftInfo = map.get(b.get(leftIdx));
-        Info rightInfo = map.get(b.get(rightIdx));
-        return (leftInfo.priority <= rightInfo.priority ? leftIdx : rightIdx);
-    }
-
-    /**
-     * An instance contains the index, value, and priority of an element of the heap.
-     */
-    private static class Info {
-        private int index;  // index of this element in map
-        private double priority; // priority of this element
-
-        /**
-         * Constructor: an instance in b[i] with priority p.
-         */
-        private Info(int i, double p) {
-            index = i;
-            priority = p;
-        }
-
+        return (priorities[leftIdx] <= priorities[rightIdx] ? leftIdx : rightIdx);
     }
 }
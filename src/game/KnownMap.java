@@ -0,0 +1,310 @@
+package game;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * An instance is the part of a cavern an explorer has seen so far, built up
+ * one observation at a time from what ExplorationState reveals.
+ * <p>
+ * A node is <i>visited</i> once its neighbours have been recorded; every other
+ * node seen as a neighbour is on the <i>frontier</i>. Nodes are numbered 0, 1, ...
+ * in the order they are first seen, and all data about them is kept in
+ * primitive arrays indexed by that number; ids are translated through an
+ * open-addressed LongIntHashMap. Nothing is allocated per node.
+ * <p>
+ * bestFrontier finds the frontier node minimising a weighted sum of the steps
+ * to it (through visited nodes) and its grid distance to the target. Its
+ * breadth-first search stops as soon as no further layer can beat the best
+ * candidate, using the smallest grid distance anywhere on the frontier, which
+ * is maintained as the map grows. In the common case of a neighbour leading
+ * towards the target, a query looks at one layer only.
+ */
+public class KnownMap {
+    /**
+     * The number returned for a node that has not been seen
+     */
+    public static final int ABSENT = -1;
+
+    private static final byte FRONTIER = 1;
+    private static final byte VISITED = 2;
+
+    private final LongIntHashMap index; // node id -> node number
+    private int size;                   // the number of nodes seen
+    private long[] ids;                 // ids[i] is the id of node i
+    private int[] distance;             // distance[i] is the grid distance from node i to the target
+    private byte[] status;              // status[i] is FRONTIER or VISITED
+
+    /**
+     * The neighbours of visited node i are adj[adjStart[i] .. adjStart[i] + degree[i] - 1].
+     */
+    private int[] adjStart;
+    private int[] degree;
+    private int[] adj;
+    private int adjSize;
+
+    /**
+     * frontierAt[d] is the number of frontier nodes at grid distance d from the
+     * target, and no frontier node is nearer than minFrontierDistance.
+     */
+    private int[] frontierAt = new int[64];
+    private int frontierSize;
+    private int minFrontierDistance = Integer.MAX_VALUE;
+
+    /**
+     * Search state, reused by every query. Node i was reached by the last query
+     * iff mark[i] == epoch; it was then steps[i] steps from the start, via parent[i].
+     */
+    private int[] mark;
+    private int[] steps;
+    private int[] parent;
+    private int[] queue;
+    private int epoch;
+
+    /**
+     * Constructor: an empty map with room for about expectedNodes nodes.
+     */
+    public KnownMap(int expectedNodes) {
+        int capacity = Math.max(16, expectedNodes);
+        index = new LongIntHashMap(capacity, ABSENT);
+        ids = new long[capacity];
+        distance = new int[capacity];
+        status = new byte[capacity];
+        adjStart = new int[capacity];
+        degree = new int[capacity];
+        adj = new int[4 * capacity];
+        mark = new int[capacity];
+        steps = new int[capacity];
+        parent = new int[capacity];
+        queue = new int[capacity];
+    }
+
+    /**
+     * Return the number of nodes seen.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Return the number of nodes on the frontier.
+     */
+    public int frontierSize() {
+        return frontierSize;
+    }
+
+    /**
+     * Return the smallest grid distance to the target of a frontier node,
+     * or Integer.MAX_VALUE if the frontier is empty.
+     */
+    public int minFrontierDistance() {
+        return minFrontierDistance;
+    }
+
+    /**
+     * Return the number of the node with the given id, or ABSENT if it has not been seen.
+     */
+    public int indexOf(long id) {
+        return index.get(id);
+    }
+
+    /**
+     * Return the id of node i.
+     */
+    public long idOf(int i) {
+        return ids[i];
+    }
+
+    /**
+     * Return the grid distance from node i to the target.
+     */
+    public int distanceToTarget(int i) {
+        return distance[i];
+    }
+
+    /**
+     * Return true iff the neighbours of node i have been recorded.
+     */
+    public boolean isVisited(int i) {
+        return status[i] == VISITED;
+    }
+
+    /**
+     * Return the number of neighbours of visited node i.
+     */
+    public int degree(int i) {
+        return degree[i];
+    }
+
+    /**
+     * Return the number of the k'th neighbour of visited node i.
+     */
+    public int neighbour(int i, int k) {
+        if (k < 0 || k >= degree[i]) {
+            throw new IndexOutOfBoundsException("neighbour: node " + i + " has no neighbour " + k);
+        }
+        return adj[adjStart[i] + k];
+    }
+
+    /**
+     * Record that the node with the given id, at grid distance dist from the
+     * target, has the given neighbours, and return its number.
+     * Throw an IllegalStateException if its neighbours were already recorded.
+     */
+    public int visit(long id, int dist, Collection<NodeStatus> neighbours) {
+        int i = nodeFor(id, dist);
+        if (status[i] == VISITED) {
+            throw new IllegalStateException("visit: node " + id + " was already visited");
+        }
+        removeFromFrontier(i);
+        status[i] = VISITED;
+
+        adjStart[i] = adjSize;
+        for (NodeStatus ns : neighbours) {
+            int j = nodeFor(ns.getId(), ns.getDistanceToTarget());
+            if (adjSize == adj.length) {
+                adj = Arrays.copyOf(adj, 2 * adj.length);
+            }
+            adj[adjSize++] = j;
+        }
+        degree[i] = adjSize - adjStart[i];
+        return i;
+    }
+
+    /**
+     * Return the frontier node nearest (in steps through visited nodes) to
+     * node from, or ABSENT if no frontier node can be reached.
+     * pathTo then gives the way to it.
+     */
+    public int nearestFrontier(int from) {
+        return bestFrontier(from, 1, 0);
+    }
+
+    /**
+     * Return the frontier node n minimising
+     * stepWeight * (steps from node from to n) + distanceWeight * (grid distance from n to the target),
+     * preferring nodes nearer the target among equals, or ABSENT if no frontier
+     * node can be reached. Steps are counted through visited nodes only.
+     * pathTo then gives the way to it.
+     * Throw an IllegalArgumentException unless stepWeight > 0 and distanceWeight >= 0.
+     */
+    public int bestFrontier(int from, int stepWeight, int distanceWeight) {
+        if (stepWeight <= 0 || distanceWeight < 0) {
+            throw new IllegalArgumentException("bestFrontier: weights must be positive");
+        }
+        if (frontierSize == 0) {
+            return ABSENT;
+        }
+        long bound = (long) distanceWeight * minFrontierDistance;
+        epoch++;
+        int best = ABSENT;
+        long bestCost = Long.MAX_VALUE;
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = from;
+        mark[from] = epoch;
+        steps[from] = 0;
+        while (head < tail) {
+            int u = queue[head++];
+            // Every node still to be reached is at least steps[u] + 1 steps away.
+            if ((long) stepWeight * (steps[u] + 1) + bound >= bestCost) {
+                break;
+            }
+            if (status[u] != VISITED) {
+                continue;
+            }
+            for (int k = adjStart[u], end = k + degree[u]; k < end; k++) {
+                int v = adj[k];
+                if (mark[v] == epoch) {
+                    continue;
+                }
+                mark[v] = epoch;
+                steps[v] = steps[u] + 1;
+                parent[v] = u;
+                if (status[v] == FRONTIER) {
+                    long cost = (long) stepWeight * steps[v] + (long) distanceWeight * distance[v];
+                    if (cost < bestCost || (cost == bestCost && distance[v] < distance[best])) {
+                        best = v;
+                        bestCost = cost;
+                    }
+                } else {
+                    queue[tail++] = v;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Return the ids of the nodes on the way from the start of the last query to
+     * node, which that query reached, excluding the start and including node.
+     */
+    public long[] pathTo(int node) {
+        if (mark[node] != epoch) {
+            throw new IllegalArgumentException("pathTo: node " + node + " was not reached by the last query");
+        }
+        long[] path = new long[steps[node]];
+        for (int k = path.length - 1; k >= 0; k--) {
+            path[k] = ids[node];
+            node = parent[node];
+        }
+        return path;
+    }
+
+    /**
+     * Return the number of the node with the given id, adding it to the
+     * frontier, at grid distance dist from the target, if it has not been seen.
+     */
+    private int nodeFor(long id, int dist) {
+        int i = index.get(id);
+        if (i != ABSENT) {
+            return i;
+        }
+        if (size == ids.length) {
+            grow();
+        }
+        i = size++;
+        index.put(id, i);
+        ids[i] = id;
+        distance[i] = dist;
+        status[i] = FRONTIER;
+        if (dist >= frontierAt.length) {
+            frontierAt = Arrays.copyOf(frontierAt, Math.max(2 * frontierAt.length, dist + 1));
+        }
+        frontierAt[dist]++;
+        frontierSize++;
+        minFrontierDistance = Math.min(minFrontierDistance, dist);
+        return i;
+    }
+
+    /**
+     * Take frontier node i off the frontier.
+     */
+    private void removeFromFrontier(int i) {
+        frontierAt[distance[i]]--;
+        frontierSize--;
+        if (frontierSize == 0) {
+            minFrontierDistance = Integer.MAX_VALUE;
+            return;
+        }
+        while (frontierAt[minFrontierDistance] == 0) {
+            minFrontierDistance++;
+        }
+    }
+
+    /**
+     * Double the room for nodes.
+     */
+    private void grow() {
+        int capacity = 2 * ids.length;
+        ids = Arrays.copyOf(ids, capacity);
+        distance = Arrays.copyOf(distance, capacity);
+        status = Arrays.copyOf(status, capacity);
+        adjStart = Arrays.copyOf(adjStart, capacity);
+        degree = Arrays.copyOf(degree, capacity);
+        mark = Arrays.copyOf(mark, capacity);
+        steps = Arrays.copyOf(steps, capacity);
+        parent = Arrays.copyOf(parent, capacity);
+        queue = Arrays.copyOf(queue, capacity);
+    }
+}
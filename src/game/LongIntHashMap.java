@@ -0,0 +1,137 @@
+package game;
+
+import java.util.Arrays;
+
+/**
+ * An instance is a map from long keys to int values, implemented as an
+ * open-addressed hash table with linear probing over primitive arrays.
+ * Nothing is boxed and no object is allocated per entry.
+ * <p>
+ * A key has no entry exactly when its value is the absent value given to the
+ * constructor, so that value cannot itself be stored. Entries cannot be removed;
+ * the map is meant for tables that only grow, such as id translation tables.
+ */
+public class LongIntHashMap {
+    private static final double MAX_LOAD = 0.5;
+
+    private final int absent; // the value reported for keys with no entry; marks free slots
+    private long[] keys;      // keys[i] is the key in slot i, if values[i] != absent
+    private int[] values;     // values[i] is the value in slot i, or absent if the slot is free
+    private int size;         // number of entries
+    private int mask;         // keys.length - 1 (the length is a power of 2)
+
+    /**
+     * Constructor: an empty map with room for about expectedSize entries,
+     * that uses absentValue to mark keys with no entry.
+     */
+    public LongIntHashMap(int expectedSize, int absentValue) {
+        absent = absentValue;
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / MAX_LOAD)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    /**
+     * Return the number of entries in this map.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Return true iff key has an entry in this map.
+     */
+    public boolean containsKey(long key) {
+        return get(key) != absent;
+    }
+
+    /**
+     * Return the value for key, or the absent value if there is none.
+     */
+    public int get(long key) {
+        int i = slot(key);
+        while (values[i] != absent) {
+            if (keys[i] == key) {
+                return values[i];
+            }
+            i = (i + 1) & mask;
+        }
+        return absent;
+    }
+
+    /**
+     * Associate value with key and return the previous value (or the absent value).
+     * Throw an IllegalArgumentException if value is the absent value.
+     */
+    public int put(long key, int value) {
+        if (value == absent) {
+            throw new IllegalArgumentException("put: cannot store the absent value");
+        }
+        int i = slot(key);
+        while (values[i] != absent) {
+            if (keys[i] == key) {
+                int old = values[i];
+                values[i] = value;
+                return old;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        size++;
+        if (size > MAX_LOAD * keys.length) {
+            rehash(2 * keys.length);
+        }
+        return absent;
+    }
+
+    /**
+     * Remove all entries from this map. This takes time proportional to the capacity.
+     */
+    public void clear() {
+        if (size > 0) {
+            Arrays.fill(values, absent);
+            size = 0;
+        }
+    }
+
+    /**
+     * Return the slot at which the search for key starts.
+     */
+    private int slot(long key) {
+        // Finaliser of MurmurHash3, so that runs of consecutive ids spread out.
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h & mask;
+    }
+
+    /**
+     * Replace the arrays by empty arrays with capacity slots.
+     */
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        if (absent != 0) {
+            Arrays.fill(values, absent);
+        }
+        mask = capacity - 1;
+    }
+
+    /**
+     * Move all entries into new arrays with capacity slots.
+     */
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != absent) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,657 @@
+package game;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An instance is a cavern stored in a file and memory-mapped, from which
+ * caverns are made that games are played on directly (newCavern), rather than
+ * a cavern built from Node, Tile and Edge objects on the heap.
+ * <p>
+ * The file is mapped with FileChannel.map, so its pages are the operating
+ * system's page cache: every process on a host that maps the same file shares
+ * one physical copy of it, however many batch runners are reading it, and none
+ * of it is seen by the garbage collector. The only state a cavern made from it
+ * keeps on the heap is which gold has been taken, one bit per open node, so
+ * taking gold in one game does not affect another. Its nodes and tiles are
+ * views, made when asked for, that read the mapping: a node is equal to, but
+ * not the same object as, the node with the same id handed out before, so
+ * nodes must be compared with equals rather than ==.
+ * <p>
+ * Nodes are identified by their ids, which are those of the cavern that was
+ * written: the open nodes are 0..numOpenTiles()-1. A wall at (r, c) has id
+ * numOpenTiles() + r * cols + c. Every query is a few reads at computed
+ * offsets, in constant time. The file is laid out, in big-endian order, as
+ * <pre>
+ *   header (HEADER_BYTES): int MAGIC, int VERSION, int rows, int cols,
+ *       int number of open nodes n, int entrance id, int target id, then zeros
+ *   int[rows * cols]  the id of the open node at each position (row-major), or WALL
+ *   int[n] row, int[n] column, int[n] gold, byte[n] type ordinal, byte[n] degree
+ *   int[4n] the ids of the neighbours of each node, in the order of its edges
+ *   byte[4n] the lengths of those edges, unsigned (at most MAX_EDGE_LENGTH)
+ * </pre>
+ * with every array starting at a multiple of 8 bytes. Files larger than 2GB are
+ * mapped as several windows of 1GB. A mapped cavern may also be a region of a
+ * larger file (see CavernCorpus).
+ * <p>
+ * This class uses mapped byte buffers rather than the Foreign Function and
+ * Memory API, which is still incubating in the JDK this project builds with;
+ * the sharing between processes is the same.
+ */
+public final class MappedCavern implements Closeable {
+    /**
+     * The first four bytes of a mapped cavern: "CAVM"
+     */
+    public static final int MAGIC = 0x4341564D;
+    /**
+     * The version of the mapped cavern format written by this class
+     */
+    public static final int VERSION = 1;
+    /**
+     * The id given for a position that holds a wall
+     */
+    public static final int WALL = -1;
+    /**
+     * The longest edge a mapped cavern can hold
+     */
+    public static final int MAX_EDGE_LENGTH = 255;
+
+    private static final int HEADER_BYTES = 64;
+    private static final int MAX_DEGREE = 4;
+    private static final int WINDOW_SHIFT = 30; // windows of 1GB
+    private static final long WINDOW_MASK = (1L << WINDOW_SHIFT) - 1;
+    private static final Tile.Type[] TYPES = Tile.Type.values();
+
+    private final FileChannel channel; // the file, if this instance closes it; else null
+    private final ByteBuffer[] windows;
+    private final int rows;
+    private final int cols;
+    private final int size;     // the number of open nodes
+    private final int entrance;
+    private final int target;
+    private final Layout layout;
+
+    /**
+     * Constructor: an instance reading the mapped cavern that starts at byte
+     * start of ch and takes at most length bytes. If owner, close closes ch.
+     */
+    private MappedCavern(FileChannel ch, long start, long length, boolean owner) throws IOException {
+        channel = (owner ? ch : null);
+        MappedByteBuffer header = ch.map(FileChannel.MapMode.READ_ONLY, start, Math.min(length, HEADER_BYTES));
+        if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC) {
+            throw new IOException("Not a mapped cavern");
+        }
+        int version = header.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported mapped cavern version " + version);
+        }
+        rows = header.getInt();
+        cols = header.getInt();
+        size = header.getInt();
+        entrance = header.getInt();
+        target = header.getInt();
+        if (rows <= 0 || cols <= 0 || size <= 0 || entrance < 0 || entrance >= size || target < 0 || target >= size) {
+            throw new IOException("Malformed mapped cavern: bad header");
+        }
+        layout = new Layout(rows, cols, size);
+        if (length < layout.end) {
+            throw new IOException("Malformed mapped cavern: file is truncated");
+        }
+        windows = map(ch, FileChannel.MapMode.READ_ONLY, start, layout.end);
+    }
+
+    /**
+     * Open the mapped cavern at path. It must be closed when no longer needed;
+     * the caverns made from it stay usable after that.
+     * Throw an IOException if path cannot be read or is not a mapped cavern.
+     */
+    public static MappedCavern open(Path path) throws IOException {
+        FileChannel ch = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new MappedCavern(ch, 0, ch.size(), true);
+        } catch (IOException | RuntimeException e) {
+            ch.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Return the mapped cavern in the length bytes of ch from byte start.
+     * Closing it leaves ch open.
+     * Throw an IOException if they do not hold a mapped cavern.
+     */
+    /* package */ static MappedCavern map(FileChannel ch, long start, long length) throws IOException {
+        return new MappedCavern(ch, start, length, false);
+    }
+
+    /**
+     * Write cavern c to the file at path in the mapped cavern format, replacing
+     * any existing file. The gold written is the gold c started with.
+     * Throw an IllegalArgumentException, before the file is touched, if an
+     * edge of c is longer than MAX_EDGE_LENGTH.
+     */
+    public static void write(Cavern c, Path path) throws IOException {
+        Layout layout = layoutOf(c);
+        try (FileChannel out = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer[] w = map(out, FileChannel.MapMode.READ_WRITE, 0, layout.end);
+            put(c, layout, w);
+            for (ByteBuffer b : w) {
+                ((MappedByteBuffer) b).force();
+            }
+        }
+    }
+
+    /**
+     * Return cavern c in the mapped cavern format, as write would write it.
+     * Throw an IllegalArgumentException if c is too large to fit in one array
+     * or an edge of c is longer than MAX_EDGE_LENGTH.
+     */
+    /* package */ static byte[] encode(Cavern c) {
+        Layout layout = layoutOf(c);
+        if (layout.end > 1L << WINDOW_SHIFT) {
+            throw new IllegalArgumentException("encode: the cavern is too large for an array");
+        }
+        ByteBuffer buf = ByteBuffer.allocate((int) layout.end);
+        put(c, layout, new ByteBuffer[]{buf});
+        return buf.array();
+    }
+
+    /**
+     * Return the layout of cavern c as a mapped cavern.
+     * Throw an IllegalArgumentException if an edge of c is longer than
+     * MAX_EDGE_LENGTH, since its length would not fit in a byte.
+     */
+    private static Layout layoutOf(Cavern c) {
+        CavernStorage s = c.getStorage();
+        for (int i = 0; i < s.size(); i++) {
+            for (int k = 0; k < s.getDegree(i); k++) {
+                int length = s.getEdgeWeight(i, k);
+                if (length < 0 || length > MAX_EDGE_LENGTH) {
+                    throw new IllegalArgumentException("MappedCavern: the edge from node " + i
+                            + " has length " + length + ", outside 0.." + MAX_EDGE_LENGTH);
+                }
+            }
+        }
+        return new Layout(c.getRowCount(), c.getColumnCount(), c.numOpenTiles());
+    }
+
+    /**
+     * Put cavern c, laid out as layout, into the windows w of a mapped cavern.
+     */
+    private static void put(Cavern c, Layout layout, ByteBuffer[] w) {
+        CavernStorage s = c.getStorage();
+        int rows = s.getRowCount();
+        int cols = s.getColumnCount();
+        putInt(w, 0, MAGIC);
+        putInt(w, 4, VERSION);
+        putInt(w, 8, rows);
+        putInt(w, 12, cols);
+        putInt(w, 16, s.size());
+        putInt(w, 20, (int) c.getEntrance().getId());
+        putInt(w, 24, (int) c.getTarget().getId());
+
+        for (int r = 0; r < rows; r++) {
+            for (int col = 0; col < cols; col++) {
+                Node n = s.getNodeAt(r, col);
+                int id = (n.getTile().getType().isOpen() ? (int) n.getId() : WALL);
+                putInt(w, layout.grid + 4 * ((long) r * cols + col), id);
+            }
+        }
+        for (int i = 0; i < s.size(); i++) {
+            putInt(w, layout.row + 4L * i, s.getRow(i));
+            putInt(w, layout.column + 4L * i, s.getColumn(i));
+            putInt(w, layout.gold + 4L * i, s.getOriginalGold(i));
+            putByte(w, layout.type + i, s.getNode(i).getTile().getType().ordinal());
+            int degree = s.getDegree(i);
+            putByte(w, layout.degree + i, degree);
+            for (int k = 0; k < MAX_DEGREE; k++) {
+                long slot = (long) MAX_DEGREE * i + k;
+                putInt(w, layout.neighbours + 4 * slot, (k < degree ? s.getNeighbour(i, k) : WALL));
+                putByte(w, layout.lengths + slot, (k < degree ? s.getEdgeWeight(i, k) : 0));
+            }
+        }
+    }
+
+    /**
+     * Return a new cavern that is played directly on this mapped cavern, with
+     * all its gold in place. Only the gold taken from it is kept on the heap,
+     * so any number of caverns (one per game played at once) can be made from
+     * one instance at little cost.
+     */
+    public Cavern newCavern() {
+        return new Cavern(new Storage(this, new long[(size + 63) / 64]));
+    }
+
+    /**
+     * Close the file underlying this cavern, unless it is a region of a file
+     * that belongs to someone else. The mapping, and the caverns made from it,
+     * stay valid until they are garbage collected.
+     */
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    /**
+     * Return the id of the open node at position (r, c), or WALL.
+     */
+    private int getNodeIdAt(int r, int c) {
+        return getInt(layout.grid + 4 * ((long) r * cols + c));
+    }
+
+    /**
+     * Return the row of open node id.
+     */
+    private int getRow(int id) {
+        return getInt(layout.row + 4L * id);
+    }
+
+    /**
+     * Return the column of open node id.
+     */
+    private int getColumn(int id) {
+        return getInt(layout.column + 4L * id);
+    }
+
+    /**
+     * Return the type of open node id.
+     */
+    private Tile.Type getType(int id) {
+        return TYPES[getByte(layout.type + id)];
+    }
+
+    /**
+     * Return the gold that open node id started with.
+     */
+    private int getOriginalGold(int id) {
+        return getInt(layout.gold + 4L * id);
+    }
+
+    /**
+     * Return the number of neighbours of open node id.
+     */
+    private int getDegree(int id) {
+        return getByte(layout.degree + id);
+    }
+
+    /**
+     * Return the id of the k'th neighbour of open node id, in the order of its edges.
+     */
+    private int getNeighbour(int id, int k) {
+        return getInt(layout.neighbours + 4 * ((long) MAX_DEGREE * id + k));
+    }
+
+    /**
+     * Return the length of the edge from open node id to its k'th neighbour.
+     */
+    private int getEdgeWeight(int id, int k) {
+        return getByte(layout.lengths + (long) MAX_DEGREE * id + k);
+    }
+
+    /**
+     * The storage of a cavern played on a mapped cavern: the mapping, shared
+     * with every other cavern made from it, and the gold taken in this one.
+     */
+    private static final class Storage implements CavernStorage {
+        private final MappedCavern image;
+        private final long[] taken;  // bit i is set iff the gold on open node i has been taken
+        private final Set<Node> graph = new OpenNodes();
+        private GoldIndex goldIndex; // told when gold is taken (null if none)
+
+        /**
+         * Constructor: an instance reading image, whose taken gold is recorded in t.
+         */
+        Storage(MappedCavern image, long[] t) {
+            this.image = image;
+            taken = t;
+        }
+
+        @Override
+        public int getRowCount() {
+            return image.rows;
+        }
+
+        @Override
+        public int getColumnCount() {
+            return image.cols;
+        }
+
+        @Override
+        public int size() {
+            return image.size;
+        }
+
+        @Override
+        public Node getEntrance() {
+            return new View(image.entrance);
+        }
+
+        @Override
+        public Node getTarget() {
+            return new View(image.target);
+        }
+
+        @Override
+        public Set<Node> getGraph() {
+            return graph;
+        }
+
+        @Override
+        public Node getNode(int id) {
+            return new View(id);
+        }
+
+        @Override
+        public Node getNodeAt(int r, int c) {
+            int id = image.getNodeIdAt(r, c);
+            return new View(id == WALL ? image.size + (long) r * image.cols + c : id);
+        }
+
+        @Override
+        public int getDegree(int id) {
+            return image.getDegree(id);
+        }
+
+        @Override
+        public int getNeighbour(int id, int k) {
+            return image.getNeighbour(id, k);
+        }
+
+        @Override
+        public int getEdgeWeight(int id, int k) {
+            return image.getEdgeWeight(id, k);
+        }
+
+        @Override
+        public int getRow(int id) {
+            return image.getRow(id);
+        }
+
+        @Override
+        public int getColumn(int id) {
+            return image.getColumn(id);
+        }
+
+        @Override
+        public int getGold(int id) {
+            return (taken[id >>> 6] & (1L << id)) != 0 ? 0 : image.getOriginalGold(id);
+        }
+
+        @Override
+        public int getOriginalGold(int id) {
+            return image.getOriginalGold(id);
+        }
+
+        /**
+         * Return the graph in compressed sparse row form, read from the mapping
+         * on each call.
+         */
+        @Override
+        public CsrGraph getCsrGraph() {
+            return CsrGraph.of(this);
+        }
+
+        @Override
+        public void setGoldIndex(GoldIndex index) {
+            goldIndex = index;
+        }
+
+        @Override
+        public void resetGold() {
+            Arrays.fill(taken, 0);
+        }
+
+        /**
+         * Return a copy of this storage, which shares the mapping and copies
+         * only the record of the gold taken.
+         */
+        @Override
+        public Storage copy() {
+            return new Storage(image, taken.clone());
+        }
+
+        /**
+         * Take the gold on open node id and return the amount taken (0 if it
+         * was taken already).
+         */
+        private int takeGold(int id) {
+            int gold = getGold(id);
+            taken[id >>> 6] |= 1L << id;
+            if (gold > 0 && goldIndex != null) {
+                goldIndex.remove(id);
+            }
+            return gold;
+        }
+
+        /**
+         * A node of the cavern, read from the mapping when asked about: open
+         * node id if id < size, and otherwise a wall.
+         */
+        private final class View extends Node {
+            View(long id) {
+                super(id);
+            }
+
+            /**
+             * Return the id of this node as an int, or -1 if it is a wall.
+             */
+            private int open() {
+                return getId() < image.size ? (int) getId() : -1;
+            }
+
+            @Override
+            public Edge getEdge(Node q) {
+                int id = open();
+                for (int k = 0, degree = (id < 0 ? 0 : image.getDegree(id)); k < degree; k++) {
+                    if (image.getNeighbour(id, k) == q.getId()) {
+                        return new Edge(this, new View(q.getId()), image.getEdgeWeight(id, k));
+                    }
+                }
+                throw new IllegalArgumentException("getEdge: Node must be a neighbour of this Node");
+            }
+
+            @Override
+            public Set<Edge> getExits() {
+                int id = open();
+                if (id < 0) {
+                    return Collections.emptySet();
+                }
+                Set<Edge> exits = new LinkedHashSet<>();
+                for (int k = 0, degree = image.getDegree(id); k < degree; k++) {
+                    exits.add(new Edge(this, new View(image.getNeighbour(id, k)), image.getEdgeWeight(id, k)));
+                }
+                return Collections.unmodifiableSet(exits);
+            }
+
+            @Override
+            public Set<Node> getNeighbours() {
+                int id = open();
+                if (id < 0) {
+                    return Collections.emptySet();
+                }
+                Set<Node> neighbours = new HashSet<>();
+                for (int k = 0, degree = image.getDegree(id); k < degree; k++) {
+                    neighbours.add(new View(image.getNeighbour(id, k)));
+                }
+                return Collections.unmodifiableSet(neighbours);
+            }
+
+            @Override
+            public Tile getTile() {
+                int id = open();
+                if (id < 0) {
+                    long cell = getId() - image.size;
+                    return new Tile((int) (cell / image.cols), (int) (cell % image.cols), 0, Tile.Type.WALL);
+                }
+                return new GoldTile(id);
+            }
+        }
+
+        /**
+         * The tile of open node id, whose gold is that left in this storage.
+         */
+        private final class GoldTile extends Tile {
+            private final int id;
+
+            GoldTile(int id) {
+                super(image.getRow(id), image.getColumn(id), image.getOriginalGold(id), image.getType(id));
+                this.id = id;
+            }
+
+            @Override
+            public int getGold() {
+                return Storage.this.getGold(id);
+            }
+
+            @Override
+            public int takeGold() {
+                return Storage.this.takeGold(id);
+            }
+        }
+
+        /**
+         * The unmodifiable set of the open nodes, which iterates in id order.
+         */
+        private final class OpenNodes extends AbstractSet<Node> {
+            @Override
+            public Iterator<Node> iterator() {
+                return new Iterator<Node>() {
+                    private int next;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < image.size;
+                    }
+
+                    @Override
+                    public Node next() {
+                        if (next >= image.size) {
+                            throw new NoSuchElementException();
+                        }
+                        return new View(next++);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return image.size;
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return o instanceof Node && ((Node) o).getId() >= 0 && ((Node) o).getId() < image.size;
+            }
+        }
+    }
+
+    /**
+     * The offsets of the arrays in a mapped cavern.
+     */
+    private static final class Layout {
+        final long grid;
+        final long row;
+        final long column;
+        final long gold;
+        final long type;
+        final long degree;
+        final long neighbours;
+        final long lengths;
+        final long end;
+
+        /**
+         * Constructor: the layout of a cavern of rows rows, cols columns and n open nodes.
+         */
+        Layout(int rows, int cols, int n) {
+            grid = HEADER_BYTES;
+            row = align(grid + 4L * rows * cols);
+            column = align(row + 4L * n);
+            gold = align(column + 4L * n);
+            type = align(gold + 4L * n);
+            degree = align(type + n);
+            neighbours = align(degree + n);
+            lengths = align(neighbours + 4L * MAX_DEGREE * n);
+            end = lengths + (long) MAX_DEGREE * n;
+        }
+
+        /**
+         * Return the least multiple of 8 that is at least offset.
+         */
+        private static long align(long offset) {
+            return (offset + 7) & ~7L;
+        }
+    }
+
+    /**
+     * Map the length bytes of ch from byte start in mode as windows of
+     * 1 << WINDOW_SHIFT bytes. An int at an offset (from start) that is a
+     * multiple of 4 never straddles two windows.
+     */
+    private static ByteBuffer[] map(FileChannel ch, FileChannel.MapMode mode, long start, long length)
+            throws IOException {
+        ByteBuffer[] w = new ByteBuffer[(int) ((length + WINDOW_MASK) >>> WINDOW_SHIFT)];
+        for (int i = 0; i < w.length; i++) {
+            long from = (long) i << WINDOW_SHIFT;
+            w[i] = ch.map(mode, start + from, Math.min(1L << WINDOW_SHIFT, length - from));
+        }
+        return w;
+    }
+
+    /**
+     * Return the window holding byte at of the cavern.
+     */
+    private static int window(long at) {
+        return (int) (at >>> WINDOW_SHIFT);
+    }
+
+    /**
+     * Return the offset of byte at of the cavern in its window.
+     */
+    private static int offset(long at) {
+        return (int) (at & WINDOW_MASK);
+    }
+
+    /**
+     * Write x at byte at of the cavern mapped as windows w.
+     */
+    private static void putInt(ByteBuffer[] w, long at, int x) {
+        w[window(at)].putInt(offset(at), x);
+    }
+
+    /**
+     * Write the low byte of x at byte at of the cavern mapped as windows w.
+     */
+    private static void putByte(ByteBuffer[] w, long at, int x) {
+        w[window(at)].put(offset(at), (byte) x);
+    }
+
+    /**
+     * Return the int at byte at of the cavern.
+     */
+    private int getInt(long at) {
+        return windows[window(at)].getInt(offset(at));
+    }
+
+    /**
+     * Return the byte at byte at of the cavern, unsigned.
+     */
+    private int getByte(long at) {
+        return windows[window(at)].get(offset(at)) & 0xFF;
+    }
+}
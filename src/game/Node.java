@@ -2,24 +2,21 @@ package game;
 
 import java.util.Collections;
 import java.util.HashSet;
-import java.util.Objects;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
 /**
  * An instance represents a node in the graph --the cavern.
  */
 public class Node {
-    /**
-     * The least positive fresh identifier available
-     */
-    private static long FRESH_ID = 0;
-
     /**
      * The unique numerical identifier of this Node
      */
     private final long id;
     /**
-     * Represents the edges outgoing from this Node
+     * Represents the edges outgoing from this Node, in the order they were added.
+     * Edges hash by identity, so a HashSet would iterate in an order that varies
+     * between runs and threads; keeping insertion order makes games reproducible.
      */
     private final Set<Edge> edges;
     private final Set<Node> neighbours;
@@ -32,8 +29,11 @@ public class Node {
      */
     private final Tile tile;
 
-    /* package */ Node(Tile t) {
-        this(FRESH_ID, t);
+    /**
+     * Constructor: an instance with a fresh id from ids and tile t
+     */
+    /* package */ Node(NodeIdAllocator ids, Tile t) {
+        this(ids.next(), t);
     }
 
     /**
@@ -41,8 +41,7 @@ public class Node {
      */
     /* package */ Node(long givenId, Tile t) {
         id = givenId;
-        FRESH_ID = Math.max(FRESH_ID, givenId + 1);
-        edges = new HashSet<>();
+        edges = new LinkedHashSet<>();
         neighbours = new HashSet<>();
 
         unmodifiableEdges = Collections.unmodifiableSet(edges);
@@ -51,6 +50,20 @@ public class Node {
         tile = t;
     }
 
+    /**
+     * Constructor: an instance with id givenId that holds no edges or tile, for
+     * subclasses that answer getEdge, getExits, getNeighbours and getTile
+     * themselves (the nodes of a MappedCavern).
+     */
+    /* package */ Node(long givenId) {
+        id = givenId;
+        edges = null;
+        neighbours = null;
+        unmodifiableEdges = null;
+        unmodifiableNeighbours = null;
+        tile = null;
+    }
+
     /**
      * Add edge e to the graph.
      */
@@ -119,6 +132,7 @@ public class Node {
      */
     @Override
     public int hashCode() {
-        return Objects.hash(id);
+        // Same value as Objects.hash(id), without the varargs array and boxing.
+        return 31 + Long.hashCode(id);
     }
 }
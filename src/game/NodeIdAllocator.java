@@ -0,0 +1,32 @@
+package game;
+
+/**
+ * An instance hands out the node identifiers for a single Cavern.
+ * Identifiers are dense: the n-th call to {@code next()} returns n - 1,
+ * so the ids of a cavern's nodes are exactly 0..N-1 and can be used directly
+ * as array indices.
+ * <p>
+ * Each Cavern under construction owns its own allocator, so caverns generated
+ * on different threads never share mutable state and a given seed always
+ * produces the same ids.
+ */
+final class NodeIdAllocator {
+    /**
+     * The least identifier not yet handed out
+     */
+    private long fresh = 0;
+
+    /**
+     * Return a fresh identifier.
+     */
+    long next() {
+        return fresh++;
+    }
+
+    /**
+     * Return the number of identifiers handed out so far.
+     */
+    int size() {
+        return (int) fresh;
+    }
+}
@@ -1,7 +1,5 @@
 package game;
 
-import java.util.Objects;
-
 /**
  * An instance maintains the status of a node -- it's id and its distance from the Orb.
  */
@@ -60,6 +58,7 @@ public class NodeStatus implements Comparable<NodeStatus> {
      */
     @Override
     public int hashCode() {
-        return Objects.hash(id);
+        // Same value as Objects.hash(id), without the varargs array and boxing.
+        return 31 + Long.hashCode(id);
     }
 }
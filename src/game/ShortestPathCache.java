@@ -0,0 +1,100 @@
+package game;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * An instance is a bounded, least-recently-used cache of the shortest-path trees
+ * of one cavern, keyed by source node id.
+ * The cache is bounded by the memory its trees use rather than by their number,
+ * and counts hits and misses so that its effectiveness can be monitored.
+ * All methods are thread-safe.
+ */
+class ShortestPathCache {
+    /**
+     * The default memory budget of a cache, in bytes
+     */
+    static final long DEFAULT_BUDGET = 64L << 20;
+
+    private final Map<Long, ShortestPathTree> trees = new LinkedHashMap<>(16, 0.75f, true);
+    private long budget;     // maximum number of bytes held by trees (at least one tree is always kept)
+    private long bytesUsed;  // sum of the sizes of the trees in the cache
+    private long hits;       // number of lookups answered from the cache
+    private long misses;     // number of lookups that had to compute a tree
+
+    /**
+     * Constructor: an empty cache holding at most budgetBytes bytes of trees.
+     */
+    ShortestPathCache(long budgetBytes) {
+        budget = budgetBytes;
+    }
+
+    /**
+     * Return the tree of shortest paths from source, computing it with search
+     * and adding it to the cache if it is not there already.
+     */
+    ShortestPathTree get(Node source, Function<Node, ShortestPathTree> search) {
+        synchronized (this) {
+            ShortestPathTree tree = trees.get(source.getId());
+            if (tree != null) {
+                hits++;
+                return tree;
+            }
+            misses++;
+        }
+        // Compute outside the lock so that other sources can be looked up meanwhile.
+        ShortestPathTree tree = search.apply(source);
+        synchronized (this) {
+            ShortestPathTree old = trees.put(source.getId(), tree);
+            if (old != null) {
+                bytesUsed -= old.sizeInBytes();
+            }
+            bytesUsed += tree.sizeInBytes();
+            evict();
+        }
+        return tree;
+    }
+
+    /**
+     * Set the memory budget of this cache to budgetBytes, evicting trees if necessary.
+     */
+    synchronized void setBudget(long budgetBytes) {
+        budget = budgetBytes;
+        evict();
+    }
+
+    /**
+     * Evict least-recently-used trees until the cache is within budget
+     * or holds a single tree.
+     */
+    private void evict() {
+        Iterator<ShortestPathTree> it = trees.values().iterator();
+        while (bytesUsed > budget && trees.size() > 1) {
+            bytesUsed -= it.next().sizeInBytes();
+            it.remove();
+        }
+    }
+
+    /**
+     * Return the number of lookups answered from the cache.
+     */
+    synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Return the number of lookups that had to compute a tree.
+     */
+    synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Return the number of trees currently in the cache.
+     */
+    synchronized int size() {
+        return trees.size();
+    }
+}
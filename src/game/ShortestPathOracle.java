@@ -0,0 +1,36 @@
+package game;
+
+import java.util.List;
+
+/**
+ * A ShortestPathOracle answers point-to-point shortest-path questions about
+ * the open nodes of a cavern. Edge weights are the same in both directions,
+ * so the distance from a to b is the distance from b to a.
+ * <p>
+ * A cavern answers from its cached shortest-path trees by default; it can be
+ * asked to build a ContractionHierarchy instead when many questions with
+ * different ends are expected (see Cavern.useContractionHierarchy).
+ */
+public interface ShortestPathOracle {
+    /**
+     * Return the length of a shortest path from from to to, or
+     * ShortestPathTree.UNREACHABLE if there is none.
+     */
+    int distance(Node from, Node to);
+
+    /**
+     * Return a shortest path from from to to, including both ends,
+     * or an empty list if there is none.
+     */
+    List<Node> path(Node from, Node to);
+
+    /**
+     * Store the ids of the nodes on a shortest path from from to to, after from
+     * and up to and including to, in ids, and return their number (the number
+     * of moves, 0 if from is to), or -1 if there is no path. Nothing is
+     * allocated, so path after path can be planned in the same array.
+     * Precondition: ids is at least as long as the path, as it is if it has a
+     * place for every open node.
+     */
+    int path(Node from, Node to, int[] ids);
+}
@@ -0,0 +1,157 @@
+package game;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An instance is the tree of shortest paths from a source node to every open
+ * node of a cavern. Distances and parents are held in int arrays indexed by
+ * node id, so any query is a few array accesses.
+ * <p>
+ * Edges in a cavern have the same weight in both directions, so the tree also
+ * gives the shortest paths from every node to the source.
+ */
+public class ShortestPathTree {
+    /**
+     * The distance reported for nodes that cannot be reached from the source
+     */
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    private final Node source;
+    private final int[] dist;   // dist[i] is the distance from source to node i, or UNREACHABLE
+    private final int[] parent; // parent[i] is the id of the node before i on a shortest path, or -1
+    private final CavernStorage nodes; // gives the open node with each id
+
+    /**
+     * Constructor: the tree with source src, distances d and parents p over the
+     * open nodes of storage ns.
+     * Precondition: d and p have length ns.size() and are indexed by node id.
+     */
+    /* package */ ShortestPathTree(Node src, int[] d, int[] p, CavernStorage ns) {
+        source = src;
+        dist = d;
+        parent = p;
+        nodes = ns;
+    }
+
+    /**
+     * Return the tree of shortest paths from src over the open nodes of storage
+     * ns, computed with Dijkstra's algorithm. Edges are read from ns by id, so
+     * the search visits no Node or Edge objects.
+     * Precondition: src is an open node of ns.
+     */
+    /* package */ static ShortestPathTree compute(Node src, CavernStorage ns) {
+        int[] d = new int[ns.size()];
+        int[] p = new int[ns.size()];
+        Arrays.fill(d, UNREACHABLE);
+        Arrays.fill(p, -1);
+
+        InternalMinHeap frontier = new InternalMinHeap(ns.size());
+        d[(int) src.getId()] = 0;
+        frontier.add((int) src.getId(), 0);
+        while (!frontier.isEmpty()) {
+            int f = frontier.poll();
+            int fWeight = d[f];
+            for (int k = 0, degree = ns.getDegree(f); k < degree; k++) {
+                int w = ns.getNeighbour(f, k);
+                int weightThroughF = fWeight + ns.getEdgeWeight(f, k);
+                if (d[w] == UNREACHABLE) {
+                    d[w] = weightThroughF;
+                    p[w] = f;
+                    frontier.add(w, weightThroughF);
+                } else if (weightThroughF < d[w]) {
+                    d[w] = weightThroughF;
+                    p[w] = f;
+                    frontier.changePriority(w, weightThroughF);
+                }
+            }
+        }
+        return new ShortestPathTree(src, d, p, ns);
+    }
+
+    /**
+     * Return the source of this tree.
+     */
+    public Node getSource() {
+        return source;
+    }
+
+    /**
+     * Return the length of a shortest path between the source and n,
+     * or UNREACHABLE if there is none.
+     */
+    public int distanceTo(Node n) {
+        return distanceTo(n.getId());
+    }
+
+    /**
+     * Return the length of a shortest path between the source and the node with
+     * the given id, or UNREACHABLE if there is none (or the id is not an open node).
+     */
+    public int distanceTo(long id) {
+        return id >= 0 && id < dist.length ? dist[(int) id] : UNREACHABLE;
+    }
+
+    /**
+     * Return the node after n on a shortest path from n to the source,
+     * or null if n is the source or cannot reach it.
+     */
+    public Node nextTowardSource(Node n) {
+        long id = n.getId();
+        if (id < 0 || id >= parent.length || parent[(int) id] < 0) {
+            return null;
+        }
+        return nodes.getNode(parent[(int) id]);
+    }
+
+    /**
+     * Return a shortest path from the source to n, including both ends.
+     * Return an empty list if n cannot be reached.
+     */
+    public List<Node> pathTo(Node n) {
+        List<Node> path = pathFrom(n);
+        Collections.reverse(path);
+        return path;
+    }
+
+    /**
+     * Return a shortest path from n to the source, including both ends.
+     * Return an empty list if n cannot reach the source.
+     */
+    public List<Node> pathFrom(Node n) {
+        List<Node> path = new ArrayList<>();
+        if (distanceTo(n) == UNREACHABLE) {
+            return path;
+        }
+        for (int i = (int) n.getId(); i >= 0; i = parent[i]) {
+            path.add(nodes.getNode(i));
+        }
+        return path;
+    }
+
+    /**
+     * Store the ids of the nodes after n on a shortest path from n to the
+     * source, up to and including the source, in ids, and return their number,
+     * or -1 if n cannot reach the source.
+     * Precondition: ids is at least as long as the path.
+     */
+    public int pathFrom(Node n, int[] ids) {
+        if (distanceTo(n) == UNREACHABLE) {
+            return -1;
+        }
+        int count = 0;
+        for (int i = parent[(int) n.getId()]; i >= 0; i = parent[i]) {
+            ids[count++] = i;
+        }
+        return count;
+    }
+
+    /**
+     * Return the approximate number of bytes of memory used by this tree.
+     */
+    /* package */ long sizeInBytes() {
+        return 2L * Integer.BYTES * dist.length;
+    }
+}
@@ -0,0 +1,221 @@
+package game;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * An instance is a hypothetical escape: a position, the time remaining and
+ * the gold picked up, following the same rules and time accounting as the
+ * escape phase of GameState, but without touching the live game. Planners
+ * can try moves on it and throw it away, or fork it to try several
+ * continuations from the same point.
+ * <p>
+ * Everything that does not change during an escape (the graph, in compressed
+ * sparse row form, and the gold on each tile when the simulation began) is
+ * held in a Board shared by an instance and all its forks. The only mutable
+ * state is a position, two counters and a bit set of the gold tiles picked
+ * up in the simulation. fork() takes constant time: the fork shares the bit
+ * set, and whichever of the two next picks up gold copies it first
+ * (copy-on-write), at a cost of one bit per gold tile of the cavern.
+ * <p>
+ * An instance must be used by one thread at a time, but an instance and its
+ * forks are independent, so forks may be handed to different threads.
+ */
+public final class SimulatedEscapeState {
+    private final Board board;
+    private int position;           // the id of the current node
+    private int timeRemaining;
+    private int goldCollected;
+    private int steps;
+    private long[] taken;           // bit k is set iff gold tile k has been picked up in this simulation
+    private boolean ownsTaken;      // false: taken may be shared with another instance
+
+    /**
+     * Constructor: an instance on board at the node with id position, with
+     * timeRemaining time left, goldCollected gold, steps moves made and the
+     * picked-up gold tiles taken, which it owns iff ownsTaken.
+     */
+    private SimulatedEscapeState(Board board, int position, int timeRemaining, int goldCollected,
+                                 int steps, long[] taken, boolean ownsTaken) {
+        this.board = board;
+        this.position = position;
+        this.timeRemaining = timeRemaining;
+        this.goldCollected = goldCollected;
+        this.steps = steps;
+        this.taken = taken;
+        this.ownsTaken = ownsTaken;
+    }
+
+    /**
+     * Return a simulation starting from the current situation of state: its
+     * position, time remaining and the gold still lying in the cavern, with
+     * no gold collected yet. Take time proportional to the size of the cavern.
+     */
+    public static SimulatedEscapeState of(EscapeState state) {
+        Board board = new Board(state.getVertices(), state.getExit());
+        return new SimulatedEscapeState(board, (int) state.getCurrentNode().getId(), state.getTimeRemaining(),
+                0, 0, new long[(board.goldValue.length + 63) / 64], true);
+    }
+
+    /**
+     * Return an independent copy of this simulation. Take constant time.
+     */
+    public SimulatedEscapeState fork() {
+        ownsTaken = false;
+        return new SimulatedEscapeState(board, position, timeRemaining, goldCollected, steps, taken, false);
+    }
+
+    /**
+     * Return the current location.
+     */
+    public Node getCurrentNode() {
+        return board.nodes[position];
+    }
+
+    /**
+     * Return the exit from the cavern.
+     */
+    public Node getExit() {
+        return board.nodes[board.exit];
+    }
+
+    /**
+     * Return true iff the current location is the exit.
+     */
+    public boolean isAtExit() {
+        return position == board.exit;
+    }
+
+    /**
+     * Return the time remaining in this simulation.
+     */
+    public int getTimeRemaining() {
+        return timeRemaining;
+    }
+
+    /**
+     * Return the gold picked up in this simulation.
+     */
+    public int getGoldCollected() {
+        return goldCollected;
+    }
+
+    /**
+     * Return the number of moves made in this simulation.
+     */
+    public int getSteps() {
+        return steps;
+    }
+
+    /**
+     * Return the gold lying on n in this simulation.
+     */
+    public int getGold(Node n) {
+        int k = board.goldSlot[(int) n.getId()];
+        return k < 0 || (taken[k >>> 6] & (1L << k)) != 0 ? 0 : board.goldValue[k];
+    }
+
+    /**
+     * Return the number of neighbours of the current location.
+     */
+    public int getNeighbourCount() {
+        return board.graph.offsets[position + 1] - board.graph.offsets[position];
+    }
+
+    /**
+     * Return the k'th neighbour of the current location (in the order of its edges).
+     * Precondition: 0 <= k < getNeighbourCount().
+     */
+    public Node getNeighbour(int k) {
+        return board.nodes[board.graph.targets[board.graph.offsets[position] + k]];
+    }
+
+    /**
+     * Return the length of the edge to the k'th neighbour of the current location.
+     * Precondition: 0 <= k < getNeighbourCount().
+     */
+    public int getEdgeLength(int k) {
+        return board.graph.weights[board.graph.offsets[position] + k];
+    }
+
+    /**
+     * Move to n, as EscapeState.moveTo does, taking the length of the edge
+     * from the time remaining.
+     * Throw an IllegalArgumentException if n is not a neighbour of the current
+     * location, and an IllegalStateException if there is not enough time left.
+     */
+    public void moveTo(Node n) {
+        int id = (int) n.getId();
+        for (int e = board.graph.offsets[position], end = board.graph.offsets[position + 1]; e < end; e++) {
+            if (board.graph.targets[e] == id) {
+                int length = board.graph.weights[e];
+                if (timeRemaining - length < 0) {
+                    throw new IllegalStateException("moveTo: not enough time left to move to node " + id);
+                }
+                position = id;
+                timeRemaining -= length;
+                steps++;
+                return;
+            }
+        }
+        throw new IllegalArgumentException("moveTo: Node must be adjacent to position");
+    }
+
+    /**
+     * Pick up the gold on the current tile, as EscapeState.pickUpGold does.
+     * Throw an IllegalStateException if there is no gold at the current location.
+     */
+    public void pickUpGold() {
+        int k = board.goldSlot[position];
+        if (k < 0 || (taken[k >>> 6] & (1L << k)) != 0) {
+            throw new IllegalStateException("pickUpGold: Error, no gold on this tile");
+        }
+        if (!ownsTaken) {
+            taken = taken.clone();
+            ownsTaken = true;
+        }
+        taken[k >>> 6] |= 1L << k;
+        goldCollected += board.goldValue[k];
+    }
+
+    /**
+     * The part of a simulation that never changes, shared by an instance and its forks.
+     */
+    private static final class Board {
+        final Node[] nodes;     // nodes[i] is the open node with id i
+        final CsrGraph graph;
+        final int exit;         // the id of the exit
+        final int[] goldSlot;   // goldSlot[i] is the gold tile number of node i, or -1 if it had no gold
+        final int[] goldValue;  // goldValue[k] is the gold on gold tile k when the simulation began
+
+        /**
+         * Constructor: the board of the cavern with open nodes vertices and exit exit.
+         */
+        Board(Collection<Node> vertices, Node exit) {
+            nodes = new Node[vertices.size()];
+            for (Node n : vertices) {
+                nodes[(int) n.getId()] = n;
+            }
+            graph = CsrGraph.of(nodes);
+            this.exit = (int) exit.getId();
+
+            goldSlot = new int[nodes.length];
+            Arrays.fill(goldSlot, -1);
+            int slots = 0;
+            for (Node n : nodes) {
+                if (n.getTile().getGold() > 0) {
+                    slots++;
+                }
+            }
+            goldValue = new int[slots];
+            int k = 0;
+            for (int i = 0; i < nodes.length; i++) {
+                int gold = nodes[i].getTile().getGold();
+                if (gold > 0) {
+                    goldSlot[i] = k;
+                    goldValue[k++] = gold;
+                }
+            }
+        }
+    }
+}
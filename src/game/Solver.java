@@ -0,0 +1,56 @@
+package game;
+
+import java.util.function.Supplier;
+
+/**
+ * A Solver is a named pair of strategies, one for each phase of a game.
+ * <p>
+ * Solvers are found with {@code ServiceLoader}: an implementation listed in
+ * META-INF/services/game.Solver can be selected by name (see {@code Solvers}).
+ * Each game asks for fresh strategies, so a solver can be used by several
+ * games running at the same time as long as its strategies share no state.
+ */
+public interface Solver {
+    /**
+     * Return the name that selects this solver, e.g. on the command line.
+     */
+    String getName();
+
+    /**
+     * Return a new strategy for the explore phase of one game.
+     */
+    ExploreStrategy newExploreStrategy();
+
+    /**
+     * Return a new strategy for the escape phase of one game.
+     */
+    EscapeStrategy newEscapeStrategy();
+
+    /**
+     * Return a solver named name that uses the strategies given by explore and escape.
+     */
+    static Solver of(String name, Supplier<? extends ExploreStrategy> explore,
+                     Supplier<? extends EscapeStrategy> escape) {
+        return new Solver() {
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public ExploreStrategy newExploreStrategy() {
+                return explore.get();
+            }
+
+            @Override
+            public EscapeStrategy newEscapeStrategy() {
+                return escape.get();
+            }
+
+            @Override
+            public String toString() {
+                return name;
+            }
+        };
+    }
+}
@@ -0,0 +1,303 @@
+package game;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * An instance runs several solvers on the same games, concurrently, and compares them.
+ * <p>
+ * Every solver plays every game on its own fresh copy of the caverns, so the scores
+ * are paired. The caverns of a game are generated or loaded once, and each solver
+ * is given a copy (Cavern.copy), which costs far less than making them again.
+ * A copy has none of the cached shortest-path trees or settings of the original,
+ * so no solver's CPU time benefits from the work of another.
+ * For each solver, the report gives the mean difference between its score
+ * and the first (baseline) solver's score on the same game, with a 95% confidence
+ * interval. It also gives the CPU time each solver spent and the rate at which it
+ * allocated memory, and how many games it did not finish within its budget.
+ */
+public class SolverComparison {
+    /**
+     * Two-sided 97.5% quantiles of Student's t distribution for 1..30 degrees of freedom
+     */
+    private static final double[] T_975 = {
+            12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262, 2.228,
+            2.201, 2.179, 2.160, 2.145, 2.131, 2.120, 2.110, 2.101, 2.093, 2.086,
+            2.080, 2.074, 2.069, 2.064, 2.060, 2.056, 2.052, 2.048, 2.045, 2.042};
+
+    private final List<Solver> solvers;
+    private final int threads;
+    private final Budget budget;
+
+    /**
+     * Constructor: an instance comparing solvers (the first is the baseline),
+     * playing up to threads games at a time with no budget.
+     */
+    public SolverComparison(List<Solver> solvers, int threads) {
+        this(solvers, threads, Budget.UNLIMITED);
+    }
+
+    /**
+     * Constructor: an instance comparing solvers (the first is the baseline),
+     * playing up to threads games at a time, each phase within budget.
+     */
+    public SolverComparison(List<Solver> solvers, int threads, Budget budget) {
+        if (solvers.isEmpty()) {
+            throw new IllegalArgumentException("SolverComparison: no solvers to compare");
+        }
+        this.solvers = new ArrayList<>(solvers);
+        this.threads = Math.max(1, threads);
+        this.budget = budget;
+    }
+
+    /**
+     * Play the games with the given seeds and return the comparison.
+     */
+    public Report run(long[] seeds) throws IOException {
+        return run(seeds.length, (i) -> seeds[i], (i) -> GameState.digCaverns(seeds[i]));
+    }
+
+    /**
+     * Play the first games games of corpus (all of them if games is larger)
+     * and return the comparison.
+     */
+    public Report run(CavernCorpus corpus, int games) throws IOException {
+        return run(Math.min(games, corpus.size()), corpus::getSeed, corpus::load);
+    }
+
+    /**
+     * Play games games, where game i has seed seed(i) and caverns caverns(i),
+     * and return the comparison.
+     */
+    private Report run(int games, IndexedSeed seed, IndexedCaverns caverns) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Run[]>> futures = new ArrayList<>();
+            for (int i = 0; i < games; i++) {
+                int game = i;
+                futures.add(pool.submit(() -> playAll(caverns.get(game), seed.get(game))));
+            }
+
+            Run[][] runs = new Run[solvers.size()][games];
+            for (int i = 0; i < games; i++) {
+                Run[] results = futures.get(i).get();
+                for (int s = 0; s < solvers.size(); s++) {
+                    runs[s][i] = results[s];
+                }
+            }
+            return new Report(solvers, runs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("SolverComparison interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException("SolverComparison: a game failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Play the game on caverns with the given seed with each solver in turn,
+     * each on its own copy of the caverns, and return their results.
+     */
+    private Run[] playAll(Pair<Cavern, Cavern> caverns, long seed) {
+        Run[] results = new Run[solvers.size()];
+        for (int s = 0; s < results.length; s++) {
+            Pair<Cavern, Cavern> copies = new Pair<>(caverns.getFirst().copy(), caverns.getSecond().copy());
+            results[s] = play(copies, seed, solvers.get(s));
+        }
+        return results;
+    }
+
+    /**
+     * Play the game on caverns with the given seed with solver, and return its result.
+     */
+    private Run play(Pair<Cavern, Cavern> caverns, long seed, Solver solver) {
+        GameState state = new GameState(caverns, seed, solver, false);
+        state.setBudgets(budget, budget);
+        state.runQuietly();
+        boolean succeeded = state.getExploreSucceeded() && state.getEscapeSucceeded();
+        boolean timedOut = state.getExploreTimedOut() || state.getEscapeTimedOut();
+        return new Run(state.getScore(), succeeded, timedOut,
+                state.getSolverCpuNanos(), state.getSolverAllocatedBytes());
+    }
+
+    /**
+     * Return the 97.5% quantile of Student's t distribution with df degrees of freedom.
+     */
+    private static double tQuantile(int df) {
+        if (df <= T_975.length) {
+            return T_975[Math.max(df, 1) - 1];
+        }
+        // Cornish-Fisher expansion around the normal quantile; accurate to 3 places here.
+        double z = 1.959964;
+        return z + (z * z * z + z) / (4 * df);
+    }
+
+    /**
+     * Gives the seed of game i.
+     */
+    private interface IndexedSeed {
+        long get(int i);
+    }
+
+    /**
+     * Gives the caverns of game i.
+     */
+    private interface IndexedCaverns {
+        Pair<Cavern, Cavern> get(int i) throws IOException;
+    }
+
+    /**
+     * The result of one solver playing one game.
+     */
+    private static class Run {
+        private final int score;
+        private final boolean succeeded;
+        private final boolean timedOut;
+        private final long cpuNanos;
+        private final long allocatedBytes; // -1 if unknown
+
+        private Run(int score, boolean succeeded, boolean timedOut, long cpuNanos, long allocatedBytes) {
+            this.score = score;
+            this.succeeded = succeeded;
+            this.timedOut = timedOut;
+            this.cpuNanos = cpuNanos;
+            this.allocatedBytes = allocatedBytes;
+        }
+    }
+
+    /**
+     * An instance is the result of a comparison.
+     */
+    public static class Report {
+        private final List<Solver> solvers;
+        private final Run[][] runs; // runs[s][i] is the result of solver s on game i
+
+        private Report(List<Solver> solvers, Run[][] runs) {
+            this.solvers = solvers;
+            this.runs = runs;
+        }
+
+        /**
+         * Return the number of games each solver played.
+         */
+        public int getGames() {
+            return runs[0].length;
+        }
+
+        /**
+         * Return the mean score of solver s (in the order given to the comparison).
+         */
+        public double meanScore(int s) {
+            double total = 0;
+            for (Run r : runs[s]) {
+                total += r.score;
+            }
+            return total / runs[s].length;
+        }
+
+        /**
+         * Return the mean difference between the scores of solver s and of the
+         * baseline solver on the same games.
+         */
+        public double meanDelta(int s) {
+            return meanScore(s) - meanScore(0);
+        }
+
+        /**
+         * Return the half-width of the 95% confidence interval of meanDelta(s),
+         * or NaN if there are fewer than two games.
+         */
+        public double deltaHalfWidth(int s) {
+            int n = runs[s].length;
+            if (n < 2) {
+                return Double.NaN;
+            }
+            double mean = meanDelta(s);
+            double sumSq = 0;
+            for (int i = 0; i < n; i++) {
+                double d = runs[s][i].score - runs[0][i].score - mean;
+                sumSq += d * d;
+            }
+            return tQuantile(n - 1) * Math.sqrt(sumSq / (n - 1) / n);
+        }
+
+        /**
+         * Return the mean CPU time, in milliseconds, solver s spent on a game.
+         */
+        public double meanCpuMillis(int s) {
+            long total = 0;
+            for (Run r : runs[s]) {
+                total += r.cpuNanos;
+            }
+            return total / 1e6 / runs[s].length;
+        }
+
+        /**
+         * Return the rate, in MB per CPU second, at which solver s allocated memory,
+         * or NaN if the JVM cannot measure allocation.
+         */
+        public double allocationRate(int s) {
+            long bytes = 0;
+            long nanos = 0;
+            for (Run r : runs[s]) {
+                if (r.allocatedBytes < 0) {
+                    return Double.NaN;
+                }
+                bytes += r.allocatedBytes;
+                nanos += r.cpuNanos;
+            }
+            return nanos == 0 ? Double.NaN : bytes / 1e6 / (nanos / 1e9);
+        }
+
+        /**
+         * Return the number of games solver s both explored and escaped successfully.
+         */
+        public int successes(int s) {
+            int n = 0;
+            for (Run r : runs[s]) {
+                if (r.succeeded) {
+                    n++;
+                }
+            }
+            return n;
+        }
+
+        /**
+         * Return the number of games in which solver s used up the budget of a phase.
+         */
+        public int timeouts(int s) {
+            int n = 0;
+            for (Run r : runs[s]) {
+                if (r.timedOut) {
+                    n++;
+                }
+            }
+            return n;
+        }
+
+        /**
+         * Print this report as a table on out.
+         */
+        public void print(PrintStream out) {
+            out.println("Games : " + getGames() + ", baseline : " + solvers.get(0).getName());
+            out.printf("%-24s %10s %8s %8s %22s %10s %10s%n",
+                    "solver", "mean", "ok", "timeout", "delta (95% CI)", "cpu ms", "MB/cpu-s");
+            for (int s = 0; s < solvers.size(); s++) {
+                String delta = (s == 0 ? "-" : String.format("%+.1f +/- %.1f", meanDelta(s), deltaHalfWidth(s)));
+                out.printf("%-24s %10.1f %8d %8d %22s %10.2f %10.1f%n", solvers.get(s).getName(), meanScore(s),
+                        successes(s), timeouts(s), delta, meanCpuMillis(s), allocationRate(s));
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package game;
+
+import student.ExplorerSolver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceLoader;
+import java.util.function.Supplier;
+
+/**
+ * Utility routines that find solvers by name.
+ */
+public final class Solvers {
+    /**
+     * The name of the solver used when none is given
+     */
+    public static final String DEFAULT = "explorer";
+
+    private Solvers() {
+    }
+
+    /**
+     * Return all solvers registered with {@code ServiceLoader}.
+     */
+    public static List<Solver> available() {
+        List<Solver> solvers = new ArrayList<>();
+        for (Solver s : ServiceLoader.load(Solver.class)) {
+            solvers.add(s);
+        }
+        return solvers;
+    }
+
+    /**
+     * Return the solver that name refers to: either the name of a registered solver,
+     * or the fully qualified name of a class with a public no-argument constructor
+     * that implements Solver, or ExploreStrategy and/or EscapeStrategy
+     * (the default solver provides any missing strategy).
+     * Throw an IllegalArgumentException if there is no such solver.
+     */
+    public static Solver find(String name) {
+        for (Solver s : available()) {
+            if (s.getName().equals(name)) {
+                return s;
+            }
+        }
+        if (DEFAULT.equals(name)) {
+            // The default solver is found even without its service registration.
+            return new ExplorerSolver();
+        }
+
+        Class<?> c;
+        try {
+            c = Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalArgumentException("No solver named " + name);
+        }
+        if (Solver.class.isAssignableFrom(c)) {
+            return (Solver) instantiate(c).get();
+        }
+        boolean explores = ExploreStrategy.class.isAssignableFrom(c);
+        boolean escapes = EscapeStrategy.class.isAssignableFrom(c);
+        if (!explores && !escapes) {
+            throw new IllegalArgumentException(name + " is not a solver or strategy");
+        }
+        Supplier<?> strategy = instantiate(c);
+        Solver fallback = find(DEFAULT);
+        return Solver.of(c.getSimpleName(),
+                explores ? () -> (ExploreStrategy) strategy.get() : fallback::newExploreStrategy,
+                escapes ? () -> (EscapeStrategy) strategy.get() : fallback::newEscapeStrategy);
+    }
+
+    /**
+     * Return a solver named name that explores like explore and escapes like escape.
+     */
+    public static Solver combine(String name, Solver explore, Solver escape) {
+        return Solver.of(name, explore::newExploreStrategy, escape::newEscapeStrategy);
+    }
+
+    /**
+     * Return a supplier of new instances of c, made with its no-argument constructor.
+     * Throw an IllegalArgumentException if c has no such public constructor.
+     */
+    private static Supplier<?> instantiate(Class<?> c) {
+        try {
+            c.getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Cannot instantiate " + c.getName() + ": " + e);
+        }
+        return () -> {
+            try {
+                return c.getConstructor().newInstance();
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Cannot instantiate " + c.getName(), e);
+            }
+        };
+    }
+}
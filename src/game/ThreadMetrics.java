@@ -0,0 +1,51 @@
+package game;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Static methods that measure the CPU time and memory allocation of threads.
+ * Each returns -1 if the JVM cannot measure what is asked for.
+ */
+/* package */ final class ThreadMetrics {
+    private static final ThreadMXBean MX = ManagementFactory.getThreadMXBean();
+
+    private ThreadMetrics() {
+    }
+
+    /**
+     * Return the CPU time, in ns, used so far by the thread with the given id.
+     * That thread must be alive.
+     */
+    static long cpuNanos(long threadId) {
+        return MX.isThreadCpuTimeSupported() ? MX.getThreadCpuTime(threadId) : -1;
+    }
+
+    /**
+     * Return the CPU time, in ns, used so far by the current thread.
+     */
+    static long cpuNanos() {
+        return cpuNanos(Thread.currentThread().getId());
+    }
+
+    /**
+     * Return the number of bytes allocated so far by the thread with the given id.
+     * That thread must be alive.
+     */
+    static long allocatedBytes(long threadId) {
+        if (MX instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunMx = (com.sun.management.ThreadMXBean) MX;
+            if (sunMx.isThreadAllocatedMemorySupported() && sunMx.isThreadAllocatedMemoryEnabled()) {
+                return sunMx.getThreadAllocatedBytes(threadId);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Return the number of bytes allocated so far by the current thread.
+     */
+    static long allocatedBytes() {
+        return allocatedBytes(Thread.currentThread().getId());
+    }
+}
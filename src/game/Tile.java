@@ -15,6 +15,12 @@ public class Tile {
      */
     private Type type;
     private boolean goldPickedUp;
+    /**
+     * The index told when the gold on this Tile is taken (null if none), and
+     * the key of this Tile in it
+     */
+    private GoldIndex goldIndex;
+    private int goldIndexKey;
 
     /**
      * Constructor: a new Tile at (r, c), with g amount of gold, and Type t.
@@ -75,9 +81,37 @@ public class Tile {
     public int takeGold() {
         final int result = getGold();
         goldPickedUp = true;
+        if (result > 0 && goldIndex != null) {
+            goldIndex.remove(goldIndexKey);
+        }
         return result;
     }
 
+    /**
+     * Put back the gold on this Tile, as if it had never been taken.
+     */
+    /* package */ void restoreGold() {
+        goldPickedUp = false;
+    }
+
+    /**
+     * Return a new Tile like this one, whose gold has been taken iff this one's
+     * has. The new Tile tells no index when its gold is taken.
+     */
+    /* package */ Tile copy() {
+        Tile t = new Tile(row, col, gold, type);
+        t.goldPickedUp = goldPickedUp;
+        return t;
+    }
+
+    /**
+     * Make this Tile tell index, where its key is key, when its gold is taken.
+     */
+    /* package */ void setGoldIndex(GoldIndex index, int key) {
+        goldIndex = index;
+        goldIndexKey = key;
+    }
+
     /**
      * An enum representing the different types of Tiles that may appear in a cavern.
      */
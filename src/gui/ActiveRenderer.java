@@ -0,0 +1,163 @@
+package gui;
+
+import java.awt.Canvas;
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Toolkit;
+import java.awt.image.BufferStrategy;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An instance draws the maze, the explorer and a heads-up display of frame
+ * times onto a canvas with a BufferStrategy, from a render loop on a thread
+ * of its own, at GUI.FRAMES_PER_SECOND. It replaces the MazePanel and the
+ * ExplorerSprite panel layered over it when GUI.ACTIVE_RENDERING is set: the
+ * two panels still hold the state and know how to draw it, but are not shown,
+ * so their repaint() calls do nothing and every frame is drawn here, whole.
+ * <p>
+ * The time taken to draw each frame (from starting to draw to showing it) is
+ * recorded in a FrameTimeHistogram. The render loop stops when the canvas is
+ * removed from its frame, as when the frame is disposed.
+ */
+final class ActiveRenderer extends Canvas implements Runnable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The colour of the box behind the frame times
+     */
+    private static final Color HUD_BACKGROUND = new Color(0, 0, 0, 160);
+
+    /**
+     * How long (ms) stop() waits for the current frame to be finished
+     */
+    private static final long STOP_WAIT_MILLIS = 1000;
+
+    private final MazePanel maze;
+    private final ExplorerSprite explorer;
+    private final int buffers;
+    private final FrameTimeHistogram frameTimes = new FrameTimeHistogram();
+    private volatile boolean running;
+    private Thread thread;      // the render loop, once started
+
+    // The frame times shown, and the text showing them, which is only made
+    // again when they change (the render loop alone uses these)
+    private double hudMedian = -1;
+    private double hudTail = -1;
+    private String hudText;
+
+    /**
+     * Constructor: a renderer of maze with explorer over it, using buffers buffers.
+     */
+    ActiveRenderer(MazePanel maze, ExplorerSprite explorer, int buffers) {
+        this.maze = maze;
+        this.explorer = explorer;
+        this.buffers = buffers;
+        setIgnoreRepaint(true);
+    }
+
+    /**
+     * Create the buffers and start the render loop.
+     * Precondition: this canvas is displayable (its frame has been made visible).
+     */
+    void start() {
+        createBufferStrategy(buffers);
+        running = true;
+        thread = new Thread(this, "gui-render");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stop the render loop after the current frame, and wait (for at most
+     * STOP_WAIT_MILLIS) until it has ended.
+     */
+    void stop() {
+        running = false;
+        Thread t = thread;
+        if (t == null || t == Thread.currentThread()) {
+            return;
+        }
+        LockSupport.unpark(t);
+        try {
+            t.join(STOP_WAIT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stop the render loop before the canvas and its buffers go away.
+     */
+    @Override
+    public void removeNotify() {
+        stop();
+        super.removeNotify();
+    }
+
+    /**
+     * Return the histogram of the times taken to draw frames.
+     */
+    FrameTimeHistogram getFrameTimes() {
+        return frameTimes;
+    }
+
+    /**
+     * The render loop: draw a frame every 1 / GUI.FRAMES_PER_SECOND s. A frame
+     * that overruns delays the next, and the schedule starts again from then
+     * rather than drawing late frames in a burst.
+     */
+    @Override
+    public void run() {
+        BufferStrategy strategy = getBufferStrategy();
+        long next = System.nanoTime();
+        while (running) {
+            long start = System.nanoTime();
+            do {
+                do {
+                    Graphics page = strategy.getDrawGraphics();
+                    try {
+                        render(page);
+                    } finally {
+                        page.dispose();
+                    }
+                } while (strategy.contentsRestored());
+                strategy.show();
+            } while (strategy.contentsLost());
+            Toolkit.getDefaultToolkit().sync();
+            long end = System.nanoTime();
+            frameTimes.record(end - start);
+
+            long period = 1_000_000_000L / Math.max(GUI.FRAMES_PER_SECOND, 1);
+            next = Math.max(next + period, end);
+            LockSupport.parkNanos(next - System.nanoTime());
+        }
+    }
+
+    /**
+     * Draw one frame on page: the maze, the explorer and the frame times.
+     */
+    private void render(Graphics page) {
+        maze.paintComponent(page);
+        explorer.paintComponent(page);
+        page.setColor(HUD_BACKGROUND);
+        page.fillRect(4, 4, 230, 18);
+        page.setColor(Color.WHITE);
+        page.drawString(hudText(), 10, 17);
+    }
+
+    /**
+     * Return the text showing the current frame times. The percentiles move
+     * from one histogram bucket to another only now and then, so the text is
+     * kept from frame to frame until they do.
+     */
+    private String hudText() {
+        double median = frameTimes.getPercentileMillis(0.5);
+        double tail = frameTimes.getPercentileMillis(0.99);
+        if (hudText == null || median != hudMedian || tail != hudTail) {
+            hudMedian = median;
+            hudTail = tail;
+            hudText = String.format("frame p50 %.2f ms  p99 %.2f ms", median, tail);
+        }
+        return hudText;
+    }
+}
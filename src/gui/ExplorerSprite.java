@@ -26,8 +26,9 @@ public class ExplorerSprite extends JPanel {
 
     private int row;                            //Explorer's row index (updates only once move completes)
     private int col;                            //Explorer's column index (updates only once move completes)
-    private int posX;                           //x-coordinate (pixels)
-    private int posY;                           //y-coordinate(pixels)
+    private volatile double drawRow;            //Row at which the explorer is drawn (fractional while moving)
+    private volatile double drawCol;            //Column at which the explorer is drawn (fractional while moving)
+    private final MazePanel maze;               //The maze the explorer is drawn over, which sets the view
     private BlockingQueue<MovePair> queuedMoves;//List of moves we need to make to get to the goal location
     private Cavern.Direction dir = Direction.NORTH;       //Which direction is the explorer currently facing?
     private Semaphore blockUntilDone;           //Allow our moveTo to block until complete.
@@ -40,9 +41,10 @@ public class ExplorerSprite extends JPanel {
     private String spriteSheet = ROOT + "explorer_sprites.png";    //Location of the spritesheet image
 
     /**
-     * Constructor:  an instance with player;'s starting position (startRow, startCol).
+     * Constructor:  an instance with player;'s starting position (startRow, startCol),
+     * drawn over the view of maze.
      */
-    public ExplorerSprite(int startRow, int startCol) {
+    public ExplorerSprite(int startRow, int startCol, MazePanel maze) {
         //Initialize fields
         sprite = new Sprite(spriteSheet, SPRITE_WIDTH, SPRITE_HEIGHT, 3);
         queuedMoves = new SynchronousQueue<MovePair>();
@@ -51,8 +53,9 @@ public class ExplorerSprite extends JPanel {
         //Initialize our starting location
         row = startRow;
         col = startCol;
-        posX = row * MazePanel.TILE_WIDTH;
-        posY = col * MazePanel.TILE_HEIGHT;
+        drawRow = row;
+        drawCol = col;
+        this.maze = maze;
 
         //Create a thread which will periodically update the explorer's position
         updateThread = new Thread(new Runnable() {
@@ -144,19 +147,34 @@ public class ExplorerSprite extends JPanel {
 
     /* Tell the explorer to move from its current location to dst.
      * After making move, calling thread will block until move completes on GUI.
-     * Precondition: dst must be adjacent to the current location and not currently moving.
+     * Precondition: not currently moving.
      * May throw an InterruptedException */
     public void moveTo(Node dst) throws InterruptedException {
-        dir = getDirection(row, col, dst.getTile().getRow(), dst.getTile().getColumn());
+        moveTo(dst.getTile().getRow(), dst.getTile().getColumn());
+    }
+
+    /* Tell the explorer to move from its current location to (dstRow, dstCol),
+     * blocking until the move completes on GUI, as moveTo(Node) does.
+     * A destination that is not adjacent (the moves in between were dropped or
+     * merged, see GameEvents.BackPressure) is jumped to at once, without animating.
+     * May throw an InterruptedException */
+    public void moveTo(int dstRow, int dstCol) throws InterruptedException {
+        dir = getDirection(row, col, dstRow, dstCol);
+        if (Math.abs(dstRow - row) + Math.abs(dstCol - col) != 1) {
+            row = dstRow;
+            col = dstCol;
+            drawRow = row;
+            drawCol = col;
+            repaint();
+            return;
+        }
 
         //Determine sequence of moves to add to queue to get to goal
-        int xDiff = (dst.getTile().getColumn() - col) * MazePanel.TILE_WIDTH;
-        int yDiff = (dst.getTile().getRow() - row) * MazePanel.TILE_HEIGHT;
-        queuedMoves.put(new MovePair(xDiff, yDiff));
+        queuedMoves.put(new MovePair(dstCol - col, dstRow - row));
 
         blockUntilDone.acquire();
-        row = dst.getTile().getRow();
-        col = dst.getTile().getColumn();
+        row = dstRow;
+        col = dstCol;
     }
 
     /**
@@ -164,7 +182,9 @@ public class ExplorerSprite extends JPanel {
      */
     public void paintComponent(Graphics page) {
         super.paintComponent(page);
-        page.drawImage(sprite(), posX, posY, MazePanel.TILE_WIDTH, MazePanel.TILE_HEIGHT, null);
+        int x = (int) Math.round(drawCol * MazePanel.TILE_WIDTH) - maze.getViewX();
+        int y = (int) Math.round(drawRow * MazePanel.TILE_HEIGHT) - maze.getViewY();
+        page.drawImage(sprite(), x, y, MazePanel.TILE_WIDTH, MazePanel.TILE_HEIGHT, null);
     }
 
     /**
@@ -172,8 +192,8 @@ public class ExplorerSprite extends JPanel {
      */
     private void update(int framesPerMove, int framesIntoMove, MovePair move) {
         //Make the move toward our destination
-        posX = MazePanel.TILE_WIDTH * getCol() + (framesIntoMove * move.xDiff) / framesPerMove;
-        posY = MazePanel.TILE_HEIGHT * getRow() + (framesIntoMove * move.yDiff) / framesPerMove;
+        drawCol = getCol() + (framesIntoMove * (double) move.xDiff) / framesPerMove;
+        drawRow = getRow() + (framesIntoMove * (double) move.yDiff) / framesPerMove;
         repaint();
     }
 
@@ -193,14 +213,14 @@ public class ExplorerSprite extends JPanel {
      * Store information that uniquely represents a move we can make.
      */
     private class MovePair {
-        final int xDiff;
-        final int yDiff;
+        final int xDiff;    //In columns
+        final int yDiff;    //In rows
 
         /**
          * Constructor: an instance with change (Xdiff, yDiff).
          *
-         * @param xChange The change in the x coordinate to make this move
-         * @param yChange The change in the y coordinate to make this move
+         * @param xChange The change in the column to make this move
+         * @param yChange The change in the row to make this move
          */
         public MovePair(int xChange, int yChange) {
             xDiff = xChange;
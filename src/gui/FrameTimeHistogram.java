@@ -0,0 +1,105 @@
+package gui;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * An instance is a histogram of the times taken to render frames, in buckets
+ * BUCKET_MICROS wide up to MAX_MILLIS, with one bucket for anything slower.
+ * The render thread records into it and any thread may read it at any time,
+ * without locks; a reading taken while frames are being recorded may be a
+ * frame or so out of date.
+ */
+public final class FrameTimeHistogram {
+    public static final int BUCKET_MICROS = 250;   //Width of a bucket
+    public static final int MAX_MILLIS = 100;      //Frames slower than this all go in the last bucket
+
+    private static final int BUCKETS = MAX_MILLIS * 1000 / BUCKET_MICROS + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * Record a frame that took nanos ns to render.
+     */
+    void record(long nanos) {
+        int bucket = (int) Math.min(Math.max(nanos, 0) / (BUCKET_MICROS * 1000L), BUCKETS - 1);
+        counts.incrementAndGet(bucket);
+        count.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * Return the number of frames recorded.
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Return the mean time (ms) taken to render a frame, or 0 if none has been recorded.
+     */
+    public double getMeanMillis() {
+        long n = count.get();
+        return n == 0 ? 0 : totalNanos.get() / 1e6 / n;
+    }
+
+    /**
+     * Return the longest time (ms) taken to render a frame.
+     */
+    public double getMaxMillis() {
+        return maxNanos.get() / 1e6;
+    }
+
+    /**
+     * Return the time (ms) within which fraction q of the frames were rendered,
+     * to the width of a bucket (the upper end of the bucket it falls in), or 0
+     * if none has been recorded. For frames slower than MAX_MILLIS, return the
+     * longest time.
+     * Precondition: 0 <= q <= 1.
+     */
+    public double getPercentileMillis(double q) {
+        long n = count.get();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(q * n));
+        long seen = 0;
+        for (int b = 0; b < BUCKETS - 1; b++) {
+            seen += counts.get(b);
+            if (seen >= rank) {
+                return (b + 1) * BUCKET_MICROS / 1000.0;
+            }
+        }
+        return getMaxMillis();
+    }
+
+    /**
+     * Return the number of frames that took from b * BUCKET_MICROS up to
+     * (b + 1) * BUCKET_MICROS microseconds (or longer, for the last bucket).
+     * Precondition: 0 <= b < getBucketCount().
+     */
+    public long getBucket(int b) {
+        return counts.get(b);
+    }
+
+    /**
+     * Return the number of buckets.
+     */
+    public int getBucketCount() {
+        return BUCKETS;
+    }
+
+    /**
+     * Return a one-line summary: the number of frames and the mean, median,
+     * 99th percentile and longest frame times.
+     */
+    @Override
+    public String toString() {
+        return String.format("%d frames, mean %.2f ms, p50 %.2f ms, p99 %.2f ms, max %.2f ms",
+                getCount(), getMeanMillis(), getPercentileMillis(0.5), getPercentileMillis(0.99), getMaxMillis());
+    }
+}
@@ -1,6 +1,7 @@
 package gui;
 
 import game.Cavern;
+import game.GameListener;
 import game.Node;
 import game.Tile;
 
@@ -13,9 +14,10 @@ import java.awt.event.ComponentListener;
 import java.awt.image.BufferedImage;
 
 /**
- * An instance is a GUI for the game.
+ * An instance is a GUI for the game. As a GameListener it is updated on a
+ * thread of its own, and may take its time to animate each move.
  */
-public class GUI extends JFrame {
+public class GUI extends JFrame implements GameListener {
     public static final double GAME_WIDTH_PROP = 0.78;       //Width of the game portion (prop of total)
     public static final double GAME_HEIGHT_PROP = 1.0;      //Height of the game portion (prop of total)
     private static final long serialVersionUID = 1L;
@@ -29,12 +31,15 @@ public class GUI extends JFrame {
     public static int SCREEN_HEIGHT = 600;    //Height of the entire screen
     public static int FRAMES_PER_SECOND = 60;    //Framerate of game (fps)
     public static int FRAMES_PER_MOVE = 25;      //How many frames does a single move take us?
+    public static boolean ACTIVE_RENDERING = false; //Draw the game from a render loop of its own?
+    public static int RENDER_BUFFERS = 3;        //How many buffers does the render loop draw into?
 
     private MazePanel mazePanel;            //The panel for generating and drawing the maze
     private ExplorerSprite explorer;        //The panel for updating and drawing the explorer
     private OptionsPanel options;           //The panel for showing stats / displaying options
     private TileSelectPanel tileSelect;     //Panel that provides more info on seleced tile
     private JLayeredPane master;            //The panel that holds all other panels
+    private ActiveRenderer renderer;        //Draws the maze and explorer when ACTIVE_RENDERING; null otherwise
 
     /* Constructor a new display for cavern canvern with the player at (playerRow, playerCol)
      * using randomg number seed seed. */
@@ -52,7 +57,8 @@ public class GUI extends JFrame {
         mazePanel.setVisited(playerRow, playerCol);
 
         //Create the explorer
-        explorer = new ExplorerSprite(playerRow, playerCol);
+        explorer = new ExplorerSprite(playerRow, playerCol, mazePanel);
+        mazePanel.follow(playerRow, playerCol);
         explorer.setBounds(0, 0, GAME_WIDTH, GAME_HEIGHT);
         explorer.setOpaque(false);
 
@@ -64,16 +70,27 @@ public class GUI extends JFrame {
                 SCREEN_WIDTH - GAME_WIDTH, (int) (SCREEN_HEIGHT * (1 - INFO_SIZE)), this);
 
         //Layer the explorer and maze into master panel
+        //(or, when rendering actively, the canvas that draws them both in their place)
         master = new JLayeredPane();
-        master.add(mazePanel, new Integer(1));
-        master.add(options, new Integer(1));
-        master.add(tileSelect, new Integer(1));
-        master.add(explorer, new Integer(2));
+        if (ACTIVE_RENDERING) {
+            renderer = new ActiveRenderer(mazePanel, explorer, RENDER_BUFFERS);
+            renderer.setBounds(0, 0, GAME_WIDTH, GAME_HEIGHT);
+            mazePanel.listenTo(renderer);
+            master.add(renderer, Integer.valueOf(1));
+        } else {
+            master.add(mazePanel, Integer.valueOf(1));
+            master.add(explorer, Integer.valueOf(2));
+        }
+        master.add(options, Integer.valueOf(1));
+        master.add(tileSelect, Integer.valueOf(1));
 
         //Display GUI
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setContentPane(master);
         setVisible(true);
+        if (renderer != null) {
+            renderer.start();
+        }
 
         //What to do when the GUI resized?
         addComponentListener(new ComponentListener() {
@@ -87,6 +104,9 @@ public class GUI extends JFrame {
                 mazePanel.setBounds(0, 0, GAME_WIDTH, GAME_HEIGHT);
                 explorer.setBounds(0, 0, GAME_WIDTH, GAME_HEIGHT);
                 explorer.repaint();
+                if (renderer != null) {
+                    renderer.setBounds(0, 0, GAME_WIDTH, GAME_HEIGHT);
+                }
                 options.setBounds(GAME_WIDTH, 0, SCREEN_WIDTH - GAME_WIDTH, (int) (SCREEN_HEIGHT * INFO_SIZE));
                 tileSelect.updateLoc(GAME_WIDTH, (int) (SCREEN_HEIGHT * INFO_SIZE),
                         SCREEN_WIDTH - GAME_WIDTH, (int) (SCREEN_HEIGHT * (1 - INFO_SIZE)));
@@ -109,12 +129,23 @@ public class GUI extends JFrame {
     /**
      * Move the player on the GUI to destination dest.
      * Note : This blocks until the player has moved.
-     * Precondition : dest is adjacent to the player's current location
      */
     public void moveTo(Node dest) {
+        moveTo(dest.getTile().getRow(), dest.getTile().getColumn());
+    }
+
+    /**
+     * Move the player on the GUI to the tile at (row, col).
+     * Note : This blocks until the player has moved. If (row, col) is not
+     * adjacent to the player, because this GUI listens with a BackPressure that
+     * drops or merges moves, the player jumps there without animating, and only
+     * the tiles moved to are marked as visited.
+     */
+    public void moveTo(int row, int col) {
         try {
-            mazePanel.setVisited(dest.getTile().getRow(), dest.getTile().getColumn());
-            explorer.moveTo(dest);
+            mazePanel.setVisited(row, col);
+            mazePanel.follow(row, col);
+            explorer.moveTo(row, col);
         } catch (InterruptedException e) {
             throw new RuntimeException("GUI moveTo : Must wait for move to finish");
         }
@@ -163,6 +194,50 @@ public class GUI extends JFrame {
         mazePanel.setLighting(light);
     }
 
+    @Override
+    public void phaseStarted(Cavern cavern, boolean escaping, int timeRemaining) {
+        setLighting(escaping);
+        updateCavern(cavern, timeRemaining);
+    }
+
+    @Override
+    public void moved(int row, int col) {
+        moveTo(row, col);
+    }
+
+    @Override
+    public void bonusChanged(double bonus) {
+        updateBonus(bonus);
+    }
+
+    @Override
+    public void timeRemainingChanged(int timeRemaining) {
+        updateTimeRemaining(timeRemaining);
+    }
+
+    @Override
+    public void goldTaken(int row, int col) {
+        mazePanel.refreshTile(row, col);
+    }
+
+    @Override
+    public void goldChanged(int goldCollected, int score) {
+        updateCoins(goldCollected, score);
+    }
+
+    @Override
+    public void error(String message) {
+        displayError(message);
+    }
+
+    /**
+     * Return the times taken to draw frames, or null unless ACTIVE_RENDERING
+     * was set when this GUI was made (the Swing painting of the panels is not timed).
+     */
+    public FrameTimeHistogram getFrameTimes() {
+        return renderer == null ? null : renderer.getFrameTimes();
+    }
+
     /**
      * Return an image representing tile type.
      */
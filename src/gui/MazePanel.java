@@ -7,9 +7,11 @@ import game.Tile;
 import javax.imageio.ImageIO;
 import javax.swing.JPanel;
 import java.awt.Color;
+import java.awt.Component;
 import java.awt.Graphics;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
@@ -20,6 +22,18 @@ import static gui.ROOT.ROOT;
  * An instance is responsible for drawing the underlying maze on the screen.
  * The MazePanel should contain only static images that don't need to change unless
  * the screen is redrawn.
+ * <p>
+ * The panel is a viewport onto the cavern. Tiles are as large as will fit the
+ * whole cavern on screen, but never smaller than MIN_TILE_SIZE pixels, so a
+ * large cavern is shown in part. The view follows the explorer, can be
+ * dragged with the mouse and zoomed with the mouse wheel. Only the tiles in
+ * view are painted, so painting takes time proportional to the size of the
+ * panel, not of the cavern. While part of the cavern is hidden, a mini-map of
+ * the whole of it is drawn in a corner, from an image made when the cavern is set.
+ * <p>
+ * Once tiles are smaller than LOW_DETAIL_TILE_SIZE, drawing each one's images
+ * costs much and shows little, so the view is drawn from a TileRaster instead:
+ * a pixel per tile, kept up to date as tiles are visited, and scaled up.
  */
 public class MazePanel extends JPanel {
     private static final long serialVersionUID = 1L;
@@ -34,6 +48,16 @@ public class MazePanel extends JPanel {
     private static final float DARK_FACTOR = 0.3f; //How dark should dark path be? Lower values means darker
     private static final int COIN_SPRITES_PER_ROW = 7;
     private static final int COIN_SPRITES_PER_COL = 2;
+    private static final int MIN_TILE_SIZE = 12;     //Tiles are never made smaller than this (pixels) to fit the cavern
+    private static final int MAX_TILE_SIZE = 96;     //Zooming in stops at this tile size (pixels)
+    private static final double ZOOM_STEP = 1.25;    //Zoom factor of one notch of the mouse wheel
+    private static final double FOLLOW_MARGIN = 0.2; //The view moves when the explorer gets this close (prop of view) to its edge
+    private static final int MINI_MAP_SIZE = 160;    //Largest side of the mini-map (pixels)
+    private static final int MINI_MAP_PIXELS = 256;  //Largest side of the image the mini-map is drawn from
+    private static final Color MINI_MAP_WALL = new Color(40, 30, 25);
+    private static final Color MINI_MAP_FLOOR = new Color(190, 170, 140);
+    private static final Color MINI_MAP_SPECIAL = new Color(230, 60, 40);
+    private static final int LOW_DETAIL_TILE_SIZE = 6; //Smaller tiles are drawn as pixels of a TileRaster, not images
 
     public static int TILE_WIDTH;       //The width (in pixels) of a tile on the grid
     public static int TILE_HEIGHT;      //The height (in pixels) of a tile on the grid
@@ -48,6 +72,16 @@ public class MazePanel extends JPanel {
     private Cavern cavern;              //Representation of the graph/level
     private boolean[][] visited;         //Contains the nodes already visited
     private Color darkness;                           //Color to place over unvisited paths
+    private volatile int viewX;         //x-coordinate (pixels, in the whole cavern) of the left of the view
+    private volatile int viewY;         //y-coordinate (pixels, in the whole cavern) of the top of the view
+    private boolean zoomed;             //true: the user has chosen the tile size, so resizing keeps it
+    private BufferedImage miniMap;      //The whole cavern, at most MINI_MAP_PIXELS on a side
+    private volatile TileRaster raster; //The cavern at one pixel per tile; made when first drawn in low detail
+    private int explorerRow;            //Where the explorer is headed, shown on the mini-map
+    private int explorerCol;
+    private final MouseAdapter mouse;   //Handles clicks, drags and the mouse wheel
+    private int dragX;                  //Where the mouse was when the view was last dragged
+    private int dragY;
 
     /**
      * Create a new MazePanel of a given size
@@ -62,11 +96,8 @@ public class MazePanel extends JPanel {
         visited = new boolean[cavern.getRowCount()][cavern.getColumnCount()];
 
         //Compute the dimensions of an individual tile
-        TILE_WIDTH = (int) (screenWidth * 1.0 / cavern.getColumnCount());
-        TILE_HEIGHT = (int) (screenHeight * 0.95 / cavern.getRowCount());
-        //Force tiles to be square
-        TILE_WIDTH = Math.min(TILE_WIDTH, TILE_HEIGHT);
-        TILE_HEIGHT = Math.min(TILE_WIDTH, TILE_HEIGHT);
+        setSize(screenWidth, screenHeight);
+        setTileSize(fitTileSize(screenWidth, screenHeight));
 
         //Load content
         try {
@@ -84,17 +115,54 @@ public class MazePanel extends JPanel {
         //Create the dark path
         darkness = new Color(0, 0, 0, (int) (256 - 256 * DARK_FACTOR));
 
-        //Add listener for clicking tiles
-        addMouseListener(new MouseAdapter() {
+        miniMap = drawMiniMap(cavern);
+
+        //Add listener for clicking tiles, dragging the view and zooming
+        mouse = new MouseAdapter() {
             @Override
             public void mousePressed(MouseEvent e) {
-                int row = e.getY() / TILE_HEIGHT;
-                int col = e.getX() / TILE_WIDTH;
+                dragX = e.getX();
+                dragY = e.getY();
+                int[] miniMapBounds = miniMapBounds();
+                if (miniMapBounds != null && e.getX() >= miniMapBounds[0] && e.getY() >= miniMapBounds[1]) {
+                    //Centre the view on the point of the mini-map clicked
+                    int col = (e.getX() - miniMapBounds[0]) * cavern.getColumnCount() / miniMapBounds[2];
+                    int row = (e.getY() - miniMapBounds[1]) * cavern.getRowCount() / miniMapBounds[3];
+                    centreOn(row, col);
+                    return;
+                }
+                int row = (e.getY() + viewY) / TILE_HEIGHT;
+                int col = (e.getX() + viewX) / TILE_WIDTH;
                 if (row < cavern.getRowCount() && col < cavern.getColumnCount()) {
                     gui.selectNode(cavern.getNodeAt(row, col));
                 }
             }
-        });
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                scrollTo(viewX - (e.getX() - dragX), viewY - (e.getY() - dragY));
+                dragX = e.getX();
+                dragY = e.getY();
+            }
+
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent e) {
+                int size = (int) Math.round(TILE_WIDTH * Math.pow(ZOOM_STEP, -e.getPreciseWheelRotation()));
+                zoomed = true;
+                zoomAbout(Math.max(1, Math.min(MAX_TILE_SIZE, size)), e.getX(), e.getY());
+            }
+        };
+        listenTo(this);
+    }
+
+    /**
+     * Handle the mouse over component c, which covers this panel exactly, as
+     * if it were over this panel: select tiles, drag the view and zoom.
+     */
+    void listenTo(Component c) {
+        c.addMouseListener(mouse);
+        c.addMouseMotionListener(mouse);
+        c.addMouseWheelListener(mouse);
     }
 
     /**
@@ -102,6 +170,8 @@ public class MazePanel extends JPanel {
      */
     void setCavern(Cavern c) {
         cavern = c;
+        miniMap = drawMiniMap(c);
+        raster = null;
         repaint();
     }
 
@@ -109,12 +179,100 @@ public class MazePanel extends JPanel {
      * The screen size has changed. Adjust the maze panel to (width, height).
      */
     void updateScreenSize(int width, int height) {
-        TILE_WIDTH = (int) (width * 1.0 / cavern.getColumnCount());
-        TILE_HEIGHT = (int) (height * 0.95 / cavern.getRowCount());
+        setSize(width, height);
+        if (!zoomed) {
+            setTileSize(fitTileSize(width, height));
+        }
+        scrollTo(viewX, viewY);
+    }
+
+    /**
+     * Return the size of the tiles that fit the cavern into (width, height),
+     * but at least MIN_TILE_SIZE.
+     */
+    private int fitTileSize(int width, int height) {
+        int w = (int) (width * 1.0 / cavern.getColumnCount());
+        int h = (int) (height * 0.95 / cavern.getRowCount());
         //Force tiles to be square
-        TILE_WIDTH = Math.min(TILE_WIDTH, TILE_HEIGHT);
-        TILE_HEIGHT = Math.min(TILE_WIDTH, TILE_HEIGHT);
+        return Math.max(Math.min(w, h), MIN_TILE_SIZE);
+    }
+
+    /**
+     * Make tiles size pixels wide and high.
+     */
+    private static void setTileSize(int size) {
+        TILE_WIDTH = size;
+        TILE_HEIGHT = size;
+    }
+
+    /**
+     * Change the tile size to size, keeping the point (x, y) of the panel over the same point of the cavern.
+     */
+    private void zoomAbout(int size, int x, int y) {
+        double scale = size / (double) TILE_WIDTH;
+        setTileSize(size);
+        scrollTo((int) Math.round((viewX + x) * scale) - x, (int) Math.round((viewY + y) * scale) - y);
+    }
+
+    /**
+     * Move the view so that its top left is at (x, y) in the whole cavern, as
+     * near as it can be while staying on the cavern.
+     */
+    private void scrollTo(int x, int y) {
+        viewX = Math.max(0, Math.min(x, cavern.getColumnCount() * TILE_WIDTH - getWidth()));
+        viewY = Math.max(0, Math.min(y, cavern.getRowCount() * TILE_HEIGHT - getHeight()));
+        repaintAll();
+    }
+
+    /**
+     * Move the view so that tile (row, col) is in the middle of it, if it can be.
+     */
+    private void centreOn(int row, int col) {
+        scrollTo(col * TILE_WIDTH + TILE_WIDTH / 2 - getWidth() / 2,
+                row * TILE_HEIGHT + TILE_HEIGHT / 2 - getHeight() / 2);
+    }
+
+    /**
+     * The explorer is about to move to tile (row, col). If that is near the
+     * edge of the view or outside it, centre the view on it.
+     */
+    void follow(int row, int col) {
+        explorerRow = row;
+        explorerCol = col;
+        int x = col * TILE_WIDTH - viewX;
+        int y = row * TILE_HEIGHT - viewY;
+        int marginX = (int) (FOLLOW_MARGIN * getWidth());
+        int marginY = (int) (FOLLOW_MARGIN * getHeight());
+        if (x < marginX || x + TILE_WIDTH > getWidth() - marginX
+                || y < marginY || y + TILE_HEIGHT > getHeight() - marginY) {
+            centreOn(row, col);
+        } else if (miniMapBounds() != null) {
+            repaint();
+        }
+    }
+
+    /**
+     * Return the x-coordinate (pixels, in the whole cavern) of the left of the view.
+     */
+    int getViewX() {
+        return viewX;
+    }
+
+    /**
+     * Return the y-coordinate (pixels, in the whole cavern) of the top of the view.
+     */
+    int getViewY() {
+        return viewY;
+    }
+
+    /**
+     * Repaint this panel and the panels layered over it, which depend on the view.
+     */
+    private void repaintAll() {
         repaint();
+        if (getParent() != null) {
+            getParent().repaint();
+        }
     }
 
     /**
@@ -126,6 +284,9 @@ public class MazePanel extends JPanel {
                 visited[i][j] = light;
             }
         }
+        if (raster != null) {
+            raster.updateAll(visited);
+        }
         repaint();
     }
 
@@ -134,6 +295,18 @@ public class MazePanel extends JPanel {
      */
     public void setVisited(int row, int col) {
         visited[row][col] = true;
+        refreshTile(row, col);
+    }
+
+    /**
+     * Update the GUI to inform it that tile (row, col) may have changed, for
+     * example by having its gold picked up.
+     */
+    public void refreshTile(int row, int col) {
+        TileRaster r = raster;
+        if (r != null) {
+            r.update(row, col, visited[row][col]);
+        }
     }
 
     /**
@@ -168,7 +341,68 @@ public class MazePanel extends JPanel {
     }
 
     /**
-     * Draw the maze on the screen.
+     * Return an image of the whole of cavern c, one pixel per tile, or one pixel
+     * for a block of tiles if c has more than MINI_MAP_PIXELS rows or columns.
+     */
+    private static BufferedImage drawMiniMap(Cavern c) {
+        int rowsPerPixel = (c.getRowCount() + MINI_MAP_PIXELS - 1) / MINI_MAP_PIXELS;
+        int colsPerPixel = (c.getColumnCount() + MINI_MAP_PIXELS - 1) / MINI_MAP_PIXELS;
+        int height = (c.getRowCount() + rowsPerPixel - 1) / rowsPerPixel;
+        int width = (c.getColumnCount() + colsPerPixel - 1) / colsPerPixel;
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                //Sample the middle of the block
+                int row = Math.min(y * rowsPerPixel + rowsPerPixel / 2, c.getRowCount() - 1);
+                int col = Math.min(x * colsPerPixel + colsPerPixel / 2, c.getColumnCount() - 1);
+                Tile.Type type = c.getTileAt(row, col).getType();
+                Color color = (type == Tile.Type.WALL ? MINI_MAP_WALL
+                        : type == Tile.Type.FLOOR ? MINI_MAP_FLOOR : MINI_MAP_SPECIAL);
+                image.setRGB(x, y, color.getRGB());
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Return the bounds {x, y, width, height} of the mini-map on this panel, or
+     * null if the whole cavern is in view and there is no mini-map.
+     */
+    private int[] miniMapBounds() {
+        int rows = cavern.getRowCount();
+        int cols = cavern.getColumnCount();
+        if (cols * TILE_WIDTH <= getWidth() && rows * TILE_HEIGHT <= getHeight()) {
+            return null;
+        }
+        double scale = Math.min(MINI_MAP_SIZE / (double) cols, MINI_MAP_SIZE / (double) rows);
+        int width = Math.max(1, (int) (cols * scale));
+        int height = Math.max(1, (int) (rows * scale));
+        return new int[]{getWidth() - width - 8, getHeight() - height - 8, width, height};
+    }
+
+    /**
+     * Draw the mini-map, with the view and the explorer marked on it, if there is one.
+     */
+    private void paintMiniMap(Graphics page) {
+        int[] b = miniMapBounds();
+        if (b == null) {
+            return;
+        }
+        double scaleX = b[2] / (double) (cavern.getColumnCount() * TILE_WIDTH);
+        double scaleY = b[3] / (double) (cavern.getRowCount() * TILE_HEIGHT);
+        page.drawImage(miniMap, b[0], b[1], b[2], b[3], null);
+        page.setColor(Color.WHITE);
+        page.drawRect(b[0] + (int) (viewX * scaleX), b[1] + (int) (viewY * scaleY),
+                Math.max(1, (int) (getWidth() * scaleX)), Math.max(1, (int) (getHeight() * scaleY)));
+        page.setColor(Color.YELLOW);
+        page.fillRect(b[0] + (int) (explorerCol * TILE_WIDTH * scaleX) - 1,
+                b[1] + (int) (explorerRow * TILE_HEIGHT * scaleY) - 1, 3, 3);
+        page.setColor(Color.BLACK);
+        page.drawRect(b[0] - 1, b[1] - 1, b[2] + 1, b[3] + 1);
+    }
+
+    /**
+     * Draw the part of the maze in view on the screen.
      */
     @Override
     public void paintComponent(Graphics page) {
@@ -178,9 +412,23 @@ public class MazePanel extends JPanel {
         }
         page.setColor(darkness);
 
-        //Draw the maze tiles
-        for (int row = 0; row < cavern.getRowCount(); row++) {
-            for (int col = 0; col < cavern.getColumnCount(); col++) {
+        //Draw the maze tiles that are in view, shifted by the view's offset
+        int firstRow = viewY / TILE_HEIGHT;
+        int firstCol = viewX / TILE_WIDTH;
+        int lastRow = Math.min(cavern.getRowCount() - 1, (viewY + getHeight()) / TILE_HEIGHT);
+        int lastCol = Math.min(cavern.getColumnCount() - 1, (viewX + getWidth()) / TILE_WIDTH);
+        page.translate(-viewX, -viewY);
+        if (TILE_WIDTH < LOW_DETAIL_TILE_SIZE) {
+            if (raster == null) {
+                raster = new TileRaster(cavern, visited);
+            }
+            raster.draw(page, firstRow, firstCol, lastRow, lastCol, TILE_WIDTH);
+            page.translate(viewX, viewY);
+            paintMiniMap(page);
+            return;
+        }
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int col = firstCol; col <= lastCol; col++) {
                 //This is a walkable tile
                 if (cavern.getTileAt(row, col).getType() != Tile.Type.WALL) {
                     //Draw the path image to the background
@@ -215,5 +463,7 @@ public class MazePanel extends JPanel {
                 }
             }
         }
+        page.translate(viewX, viewY);
+        paintMiniMap(page);
     }
 }
@@ -0,0 +1,91 @@
+package gui;
+
+import game.Cavern;
+import game.Tile;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+/**
+ * An instance is a picture of a whole cavern with one pixel per tile, used by
+ * MazePanel to draw tiles too small for their images. The colour of a pixel
+ * shows the tile's type, whether it has been visited and whether it has gold.
+ * Pixels are written straight into the image's int[] buffer: all of them when
+ * the instance is made or the lighting changes, and one at a time as tiles
+ * are visited or emptied of gold. Drawing the part of the cavern in view is
+ * then a single scaled copy of part of the image.
+ */
+final class TileRaster {
+    private static final int WALL_RGB = new Color(40, 30, 25).getRGB();
+    private static final int FLOOR_RGB = new Color(150, 135, 105).getRGB();
+    private static final int DARK_FLOOR_RGB = new Color(70, 62, 48).getRGB(); //Not yet visited
+    private static final int GOLD_RGB = new Color(240, 200, 40).getRGB();
+    private static final int ORB_RGB = new Color(90, 160, 240).getRGB();
+    private static final int ENTRANCE_RGB = new Color(230, 60, 40).getRGB();
+
+    private final Cavern cavern;
+    private final BufferedImage image;
+    private final int[] pixels;         //pixels[row * columns + col] is the pixel of tile (row, col)
+    private final int columns;
+
+    /**
+     * Constructor: the picture of cavern c, in which visited[row][col] says
+     * whether tile (row, col) has been visited.
+     */
+    TileRaster(Cavern c, boolean[][] visited) {
+        cavern = c;
+        columns = c.getColumnCount();
+        image = new BufferedImage(columns, c.getRowCount(), BufferedImage.TYPE_INT_RGB);
+        pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        updateAll(visited);
+    }
+
+    /**
+     * Recolour every pixel, visited[row][col] saying whether tile (row, col) has been visited.
+     */
+    void updateAll(boolean[][] visited) {
+        for (int row = 0; row < visited.length; row++) {
+            for (int col = 0; col < columns; col++) {
+                pixels[row * columns + col] = colorOf(cavern.getTileAt(row, col), visited[row][col]);
+            }
+        }
+    }
+
+    /**
+     * Recolour the pixel of tile (row, col), which has been visited iff visited.
+     */
+    void update(int row, int col, boolean visited) {
+        pixels[row * columns + col] = colorOf(cavern.getTileAt(row, col), visited);
+    }
+
+    /**
+     * Draw tiles firstRow..lastRow, firstCol..lastCol, each tileSize pixels
+     * square, where they belong in a picture of the whole cavern on page.
+     */
+    void draw(Graphics page, int firstRow, int firstCol, int lastRow, int lastCol, int tileSize) {
+        page.drawImage(image,
+                firstCol * tileSize, firstRow * tileSize, (lastCol + 1) * tileSize, (lastRow + 1) * tileSize,
+                firstCol, firstRow, lastCol + 1, lastRow + 1, null);
+    }
+
+    /**
+     * Return the colour of the pixel of tile t, which has been visited iff visited.
+     */
+    private static int colorOf(Tile t, boolean visited) {
+        switch (t.getType()) {
+            case WALL:
+                return WALL_RGB;
+            case ORB:
+                return ORB_RGB;
+            case ENTRANCE:
+                return ENTRANCE_RGB;
+            default:
+                if (t.getGold() > 0) {
+                    return GOLD_RGB;
+                }
+                return visited ? FLOOR_RGB : DARK_FLOOR_RGB;
+        }
+    }
+}
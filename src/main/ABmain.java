@@ -0,0 +1,60 @@
+package main;
+
+import game.CavernCorpus;
+import game.Solver;
+import game.SolverComparison;
+import game.Solvers;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+/**
+ * Compares solvers on identical games.
+ * Usage: ABmain -solvers baseline,other[,...] [-n games] [-s seed] [-c corpus] [-t threads]
+ *               [-wall ms] [-cpu ms] [-moves n]
+ * Each name is resolved with Solvers.find. The games are the first -n of the corpus
+ * given with -c, or otherwise -n games whose seeds are drawn from a Random seeded
+ * with -s (or a random seed). -wall, -cpu and -moves limit each phase of each game.
+ */
+public class ABmain {
+    public static void main(String[] args) throws IOException {
+        List<String> argList = new ArrayList<>(Arrays.asList(args));
+        String names = Utilities.argValue(argList, "-solvers", Solvers.DEFAULT);
+        List<Solver> solvers = new ArrayList<>();
+        for (String name : names.split(",")) {
+            solvers.add(Solvers.find(name.trim()));
+        }
+
+        int numGames = 100;
+        int threads = Runtime.getRuntime().availableProcessors();
+        try {
+            numGames = Math.max(Integer.parseInt(Utilities.argValue(argList, "-n", "100")), 1);
+            threads = Math.max(Integer.parseInt(Utilities.argValue(argList, "-t", "" + threads)), 1);
+        } catch (NumberFormatException e) {
+            System.err.println("Couldn't parse argument for -n or -t option");
+        }
+
+        SolverComparison comparison = new SolverComparison(solvers, threads, Utilities.parseBudgetArgs(args));
+        SolverComparison.Report report;
+        String corpusPath = Utilities.argValue(argList, "-c", null);
+        if (corpusPath != null) {
+            try (CavernCorpus corpus = CavernCorpus.open(Paths.get(corpusPath))) {
+                report = comparison.run(corpus, numGames);
+            }
+        } else {
+            Optional<Long> seed = Utilities.parseSeedArgs(args);
+            Random rand = (seed.isPresent() ? new Random(seed.get()) : new Random());
+            long[] seeds = new long[numGames];
+            for (int i = 0; i < numGames; i++) {
+                seeds[i] = rand.nextLong();
+            }
+            report = comparison.run(seeds);
+        }
+        report.print(System.out);
+    }
+}
@@ -0,0 +1,61 @@
+package main;
+
+import game.CavernCorpus;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+/**
+ * Generates a corpus of games for benchmarking solvers.
+ * Usage: CorpusMain -o file [-n games] [-s seed] [-z | -m]
+ * The seeds of the games are drawn from a Random seeded with the -s seed
+ * (or a random one), so the same arguments always give the same corpus.
+ * -z deflates the caverns in the corpus. -m stores them in the format of
+ * MappedCavern, so that games are played directly on the mapped corpus (whose
+ * nodes must be compared with equals, not ==).
+ * Run the games with TXTmain -c file.
+ */
+public class CorpusMain {
+    public static void main(String[] args) throws IOException {
+        List<String> argList = new ArrayList<>(Arrays.asList(args));
+        int outIndex = argList.indexOf("-o");
+        if (outIndex < 0 || outIndex + 1 >= argList.size()) {
+            System.err.println("Usage: CorpusMain -o file [-n games] [-s seed] [-z | -m]");
+            return;
+        }
+        if (argList.contains("-z") && argList.contains("-m")) {
+            System.err.println("Error, -z and -m cannot be used together");
+            return;
+        }
+        CavernCorpus.Encoding encoding = (argList.contains("-z") ? CavernCorpus.Encoding.DEFLATED
+                : argList.contains("-m") ? CavernCorpus.Encoding.MAPPED : CavernCorpus.Encoding.BINARY);
+        Path out = Paths.get(argList.get(outIndex + 1));
+
+        int numGames = 100;
+        int repeatNumberIndex = argList.indexOf("-n");
+        if (repeatNumberIndex >= 0) {
+            try {
+                numGames = Math.max(Integer.parseInt(argList.get(repeatNumberIndex + 1)), 1);
+            } catch (Exception e) {
+                System.err.println("Couldn't parse argument for -n option");
+            }
+        }
+        Optional<Long> seed = Utilities.parseSeedArgs(args);
+        Random rand = (seed.isPresent() ? new Random(seed.get()) : new Random());
+        long[] seeds = new long[numGames];
+        for (int i = 0; i < numGames; i++) {
+            seeds[i] = rand.nextLong();
+        }
+
+        long start = System.nanoTime();
+        CavernCorpus.generate(out, seeds, encoding);
+        System.out.println("Wrote " + numGames + " games to " + out + " in "
+                + (System.nanoTime() - start) / 1000000 + " ms");
+    }
+}
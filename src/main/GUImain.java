@@ -1,10 +1,21 @@
 package main;
 
+import game.Budget;
+import game.GameEvents.BackPressure;
 import game.GameState;
+import gui.GUI;
+
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Optional;
 
 /**
- * Run this program to see a demonstration of the GUI interface
+ * Run this program to see a demonstration of the GUI interface.
+ * -bp block|drop|coalesce selects what the game does when the GUI falls
+ * behind it (see GameEvents.BackPressure); the default is block, which shows
+ * every move, while with drop or coalesce the explorer jumps over the moves the
+ * GUI missed. -active draws the game from a render loop of its own (see
+ * GUI.ACTIVE_RENDERING), showing its frame times over the maze.
  */
 public class GUImain {
     /**
@@ -12,6 +23,17 @@ public class GUImain {
      */
     public static void main(String[] args) {
         Optional<Long> seed = Utilities.parseSeedArgs(args);
-        GameState.runNewGame((seed.isPresent() ? seed.get() : 0), true);
+        String policy = Utilities.argValue(new ArrayList<>(Arrays.asList(args)), "-bp", "block");
+        BackPressure backPressure = BackPressure.BLOCK;
+        try {
+            backPressure = BackPressure.valueOf(policy.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error, -bp must be followed by block, drop or coalesce");
+        }
+        if (Arrays.asList(args).contains("-active")) {
+            GUI.ACTIVE_RENDERING = true;
+        }
+        GameState.runNewGame((seed.isPresent() ? seed.get() : 0), true, Utilities.parseSolverArgs(args),
+                Budget.UNLIMITED, backPressure);
     }
 }
@@ -0,0 +1,83 @@
+package main;
+
+import game.Cavern;
+import game.Cavern.GenerationMode;
+import game.Tile;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+/**
+ * Compares the ways of generating the caverns of a game. For each
+ * GenerationMode it generates pairs of caverns as a game does (an explore
+ * cavern, then an escape cavern in which the orb's tile is open) and reports
+ * the distribution of generation times and the number of attempts needed.
+ * Usage: GenerationBenchmark [-r rows] [-c cols] [-n pairs] [-s seed]
+ */
+public class GenerationBenchmark {
+    public static void main(String[] args) {
+        List<String> argList = new ArrayList<>(Arrays.asList(args));
+        int rows = 25;
+        int cols = 40;
+        int pairs = 200;
+        try {
+            rows = Math.max(Integer.parseInt(Utilities.argValue(argList, "-r", "25")), 3);
+            cols = Math.max(Integer.parseInt(Utilities.argValue(argList, "-c", "40")), 3);
+            pairs = Math.max(Integer.parseInt(Utilities.argValue(argList, "-n", "200")), 1);
+        } catch (NumberFormatException e) {
+            System.err.println("Couldn't parse argument for -r, -c or -n option");
+        }
+        Optional<Long> seed = Utilities.parseSeedArgs(args);
+        long baseSeed = (seed.isPresent() ? seed.get() : new Random().nextLong());
+
+        System.out.println("Caverns : " + rows + "x" + cols + ", " + pairs + " explore/escape pairs per mode");
+        System.out.println("Mode            cavern    mean ms     p50 ms     p99 ms     max ms   attempts (mean/max)");
+        for (GenerationMode mode : GenerationMode.values()) {
+            // The same seed for both modes, so that they start from the same random streams.
+            Random rand = new Random(baseSeed);
+            long[] exploreNanos = new long[pairs];
+            long[] escapeNanos = new long[pairs];
+            int[] exploreAttempts = new int[pairs];
+            int[] escapeAttempts = new int[pairs];
+            for (int i = 0; i < pairs; i++) {
+                long start = System.nanoTime();
+                Cavern explore = Cavern.digExploreCavern(rows, cols, rand, mode);
+                exploreNanos[i] = System.nanoTime() - start;
+                exploreAttempts[i] = explore.getGenerationAttempts();
+
+                Tile orb = explore.getTarget().getTile();
+                start = System.nanoTime();
+                Cavern escape = Cavern.digEscapeCavern(rows, cols, orb.getRow(), orb.getColumn(), rand, mode);
+                escapeNanos[i] = System.nanoTime() - start;
+                escapeAttempts[i] = escape.getGenerationAttempts();
+            }
+            report(mode, "explore", exploreNanos, exploreAttempts);
+            report(mode, "escape", escapeNanos, escapeAttempts);
+        }
+    }
+
+    /**
+     * Print one line of the report: the distribution of the times nanos taken to
+     * generate the kind of cavern named by cavern in mode, and of the attempts.
+     */
+    private static void report(GenerationMode mode, String cavern, long[] nanos, int[] attempts) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        double mean = Arrays.stream(nanos).average().orElse(0);
+        System.out.printf("%-15s %-7s %10.2f %10.2f %10.2f %10.2f %8.2f / %d%n", mode, cavern,
+                mean / 1e6, percentile(sorted, 0.5) / 1e6, percentile(sorted, 0.99) / 1e6,
+                sorted[sorted.length - 1] / 1e6,
+                Arrays.stream(attempts).average().orElse(0), Arrays.stream(attempts).max().orElse(0));
+    }
+
+    /**
+     * Return the value at fraction q of the way through sorted.
+     * Precondition: sorted is sorted and not empty.
+     */
+    private static long percentile(long[] sorted, double q) {
+        return sorted[Math.min(sorted.length - 1, (int) Math.floor(q * sorted.length))];
+    }
+}
@@ -0,0 +1,153 @@
+package main;
+
+import game.Cavern;
+import game.ContractionHierarchy;
+import game.DeltaStepping;
+import game.Node;
+import game.ShortestPathOracle;
+import game.ShortestPathTree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Compares ways of answering point-to-point shortest-path questions on an
+ * escape cavern: Dijkstra's algorithm (one shortest-path tree per question)
+ * against a contraction hierarchy, whose preprocessing time is reported with
+ * its query speedup and the number of questions needed to pay for it.
+ * It then compares the single-source searches that compute whole shortest-path
+ * trees: Dijkstra's algorithm against parallel delta-stepping with 1, 2, 4, ...
+ * threads, up to the number of processors.
+ * Usage: PathBenchmark [-r rows] [-c cols] [-q queries] [-s seed]
+ */
+public class PathBenchmark {
+    /**
+     * The number of sources searched from in the single-source comparison
+     */
+    private static final int SOURCES = 5;
+
+    public static void main(String[] args) {
+        List<String> argList = new ArrayList<>(Arrays.asList(args));
+        int rows = 100;
+        int cols = 100;
+        int queries = 1000;
+        try {
+            rows = Math.max(Integer.parseInt(Utilities.argValue(argList, "-r", "100")), 2);
+            cols = Math.max(Integer.parseInt(Utilities.argValue(argList, "-c", "100")), 2);
+            queries = Math.max(Integer.parseInt(Utilities.argValue(argList, "-q", "1000")), 1);
+        } catch (NumberFormatException e) {
+            System.err.println("Couldn't parse argument for -r, -c or -q option");
+        }
+        Optional<Long> seed = Utilities.parseSeedArgs(args);
+        Random rand = (seed.isPresent() ? new Random(seed.get()) : new Random());
+
+        Cavern cavern = Cavern.digEscapeCavern(rows, cols, rows / 2, cols / 2, rand);
+        Node[] nodes = cavern.getGraph().toArray(new Node[0]);
+        Node[] from = new Node[queries];
+        Node[] to = new Node[queries];
+        for (int i = 0; i < queries; i++) {
+            from[i] = nodes[rand.nextInt(nodes.length)];
+            to[i] = nodes[rand.nextInt(nodes.length)];
+        }
+        System.out.println("Cavern : " + rows + "x" + cols + ", " + nodes.length + " open nodes, "
+                + queries + " queries");
+
+        // Keep only one tree, so that every question with a new end searches the graph,
+        // and search it with Dijkstra's algorithm whatever the size of the cavern.
+        cavern.setPathCacheBudget(0);
+        cavern.setParallelSearchThreshold(Integer.MAX_VALUE);
+        ShortestPathOracle trees = cavern.getShortestPathOracle();
+        int[] expected = new int[queries];
+        long start = System.nanoTime();
+        for (int i = 0; i < queries; i++) {
+            expected[i] = trees.distance(from[i], to[i]);
+        }
+        long dijkstraNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        ContractionHierarchy ch = cavern.useContractionHierarchy();
+        long buildNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        int wrong = 0;
+        for (int i = 0; i < queries; i++) {
+            if (ch.distance(from[i], to[i]) != expected[i]) {
+                wrong++;
+            }
+        }
+        long chNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < queries; i++) {
+            ch.path(from[i], to[i]);
+        }
+        long chPathNanos = System.nanoTime() - start;
+
+        double dijkstraMicros = dijkstraNanos / 1e3 / queries;
+        double chMicros = chNanos / 1e3 / queries;
+        System.out.printf("Dijkstra               : %10.1f us/query%n", dijkstraMicros);
+        System.out.printf("CH preprocessing       : %10.1f ms, %d shortcuts%n", buildNanos / 1e6,
+                ch.getShortcutCount());
+        System.out.printf("CH distance            : %10.1f us/query (speedup %.1fx)%n", chMicros,
+                dijkstraMicros / chMicros);
+        System.out.printf("CH path                : %10.1f us/query%n", chPathNanos / 1e3 / queries);
+        if (dijkstraMicros > chMicros) {
+            System.out.printf("Break-even             : %10d queries%n",
+                    (long) Math.ceil(buildNanos / 1e3 / (dijkstraMicros - chMicros)));
+        }
+        if (wrong > 0) {
+            System.out.println("Error: " + wrong + " CH distances differ from Dijkstra's");
+        }
+
+        compareSingleSource(cavern, nodes, rand);
+    }
+
+    /**
+     * Time whole shortest-path trees from a few random sources in cavern, whose
+     * open nodes are nodes, with Dijkstra's algorithm and with delta-stepping
+     * on increasing numbers of threads, and check that the distances agree.
+     */
+    private static void compareSingleSource(Cavern cavern, Node[] nodes, Random rand) {
+        Node[] sources = new Node[SOURCES];
+        int[][] expected = new int[SOURCES][];
+        long start = System.nanoTime();
+        for (int i = 0; i < SOURCES; i++) {
+            sources[i] = nodes[rand.nextInt(nodes.length)];
+            ShortestPathTree tree = cavern.getShortestPathTree(sources[i]);
+            expected[i] = new int[nodes.length];
+            for (Node n : nodes) {
+                expected[i][(int) n.getId()] = tree.distanceTo(n);
+            }
+        }
+        double dijkstraMillis = (System.nanoTime() - start) / 1e6 / SOURCES;
+        System.out.printf("Dijkstra tree          : %10.1f ms/source%n", dijkstraMillis);
+
+        int processors = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; ; threads = Math.min(2 * threads, processors)) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            DeltaStepping search = new DeltaStepping(cavern, pool, DeltaStepping.DEFAULT_DELTA);
+            search.distances(sources[0]); // warm up
+            int wrong = 0;
+            start = System.nanoTime();
+            for (int i = 0; i < SOURCES; i++) {
+                if (!Arrays.equals(search.distances(sources[i]), expected[i])) {
+                    wrong++;
+                }
+            }
+            double millis = (System.nanoTime() - start) / 1e6 / SOURCES;
+            pool.shutdown();
+            System.out.printf("Delta-stepping, %2d thr : %10.1f ms/source (speedup %.1fx)%n", threads, millis,
+                    dijkstraMillis / millis);
+            if (wrong > 0) {
+                System.out.println("Error: " + wrong + " delta-stepping trees differ from Dijkstra's");
+            }
+            if (threads == processors) {
+                break;
+            }
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package main;
+
+import game.EscapeState;
+import game.EscapeStrategy;
+import game.Node;
+import game.ShortestPathTree;
+import game.SimulatedEscapeState;
+import game.Solver;
+import game.SolverComparison;
+import game.Solvers;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+/**
+ * Checks that SimulatedEscapeState follows the same rules and time accounting
+ * as the escape phase of GameState. In each game, the escape is a random walk
+ * made on the live game and, move for move, on a simulation started from it:
+ * after every move and pick-up (and every attempt the rules forbid: picking up
+ * gold where there is none, moving to a node that is not a neighbour, taking
+ * an edge longer than the time remaining) the two must agree on the position,
+ * the time remaining, the gold collected and whether the attempt was refused.
+ * The walk goes on while a random move leaves time to get out, then heads for
+ * the exit along a shortest path, so every escape succeeds; edges longer than
+ * the time remaining, which the game refuses without moving, are tried
+ * whenever there are any. Forks taken along the way must be left untouched by
+ * the moves made after them, and their own moves must leave the original
+ * untouched.
+ * Usage: SimulationCheck [-n games] [-s seed]
+ */
+public class SimulationCheck {
+    /**
+     * Every FORK_INTERVAL moves (on average) the simulation is forked
+     */
+    private static final int FORK_INTERVAL = 10;
+
+    private static int checks;      // The number of comparisons made
+    private static int mismatches;  // The number of them that failed
+    private static int refusals;    // The number of moves refused for lack of time, among the checks
+
+    public static void main(String[] args) throws IOException {
+        List<String> argList = new ArrayList<>(Arrays.asList(args));
+        int games = 300;
+        try {
+            games = Math.max(Integer.parseInt(Utilities.argValue(argList, "-n", "300")), 1);
+        } catch (NumberFormatException e) {
+            System.err.println("Couldn't parse argument for -n option");
+        }
+        Optional<Long> seed = Utilities.parseSeedArgs(args);
+        Random rand = (seed.isPresent() ? new Random(seed.get()) : new Random());
+        long[] seeds = new long[games];
+        for (int i = 0; i < games; i++) {
+            seeds[i] = rand.nextLong();
+        }
+
+        Solver explorer = Solvers.find(Solvers.DEFAULT);
+        Solver checker = Solver.of("simulation-check", explorer::newExploreStrategy,
+                () -> new CheckingEscape(new Random(rand.nextLong())));
+        // One thread: the games are played one at a time, so the counts need no locking.
+        new SolverComparison(Arrays.asList(checker), 1).run(seeds);
+
+        System.out.println("Games : " + games + ", checks : " + checks + " (" + refusals
+                + " moves refused for lack of time), mismatches : " + mismatches);
+        if (mismatches > 0) {
+            System.out.println("Error: SimulatedEscapeState differs from GameState");
+        }
+    }
+
+    /**
+     * Count a check, and a mismatch unless ok, described by what.
+     */
+    private static void check(boolean ok, String what) {
+        checks++;
+        if (!ok) {
+            mismatches++;
+            if (mismatches <= 10) {
+                System.out.println("Mismatch: " + what);
+            }
+        }
+    }
+
+    /**
+     * Return the class of the exception thrown by action, or null if it throws none.
+     */
+    private static Class<?> thrownBy(Runnable action) {
+        try {
+            action.run();
+            return null;
+        } catch (RuntimeException e) {
+            return e.getClass();
+        }
+    }
+
+    /**
+     * An escape that walks at random on the live game and a simulation of it,
+     * comparing the two.
+     */
+    private static class CheckingEscape implements EscapeStrategy {
+        private final Random rand;
+        private int goldCollected;  // On the live game, counted as it is picked up
+
+        CheckingEscape(Random rand) {
+            this.rand = rand;
+        }
+
+        @Override
+        public void escape(EscapeState state) {
+            SimulatedEscapeState sim = SimulatedEscapeState.of(state);
+            ShortestPathTree toExit = state.getShortestPathTree(state.getExit());
+            boolean leaving = false;
+            Node[] vertices = state.getVertices().toArray(new Node[0]);
+            List<SimulatedEscapeState> forks = new ArrayList<>();
+            List<int[]> forkedAt = new ArrayList<>(); // {node id, time remaining, gold collected}
+
+            while (true) {
+                Node current = state.getCurrentNode();
+                int gold = current.getTile().getGold();
+                check(sim.getGold(current) == gold, "gold on " + current.getId());
+                if (gold > 0) {
+                    state.pickUpGold();
+                    goldCollected += gold;
+                    sim.pickUpGold();
+                } else {
+                    check(thrownBy(state::pickUpGold) == IllegalStateException.class
+                            && thrownBy(sim::pickUpGold) == IllegalStateException.class,
+                            "picking up no gold at " + current.getId());
+                }
+                compare(state, sim);
+
+                if (rand.nextInt(FORK_INTERVAL) == 0) {
+                    forks.add(sim.fork());
+                    forkedAt.add(new int[]{(int) sim.getCurrentNode().getId(), sim.getTimeRemaining(),
+                            sim.getGoldCollected()});
+                }
+
+                Node stranger = vertices[rand.nextInt(vertices.length)];
+                if (!current.getNeighbours().contains(stranger)) {
+                    check(thrownBy(() -> state.moveTo(stranger)) == IllegalArgumentException.class
+                            && thrownBy(() -> sim.moveTo(stranger)) == IllegalArgumentException.class,
+                            "moving to non-neighbour " + stranger.getId());
+                }
+
+                for (Node n : current.getNeighbours()) {
+                    if (current.getEdge(n).length > state.getTimeRemaining()) {
+                        refusals++;
+                        check(thrownBy(() -> state.moveTo(n)) != null
+                                && thrownBy(() -> sim.moveTo(n)) == IllegalStateException.class,
+                                "refusing the edge to " + n.getId() + " for lack of time");
+                        compare(state, sim);
+                    }
+                }
+
+                List<Node> neighbours = new ArrayList<>(current.getNeighbours());
+                Node next = neighbours.get(rand.nextInt(neighbours.size()));
+                if (leaving || state.getTimeRemaining() - current.getEdge(next).length < toExit.distanceTo(next)) {
+                    leaving = true;
+                    if (current.equals(state.getExit())) {
+                        break;
+                    }
+                    next = toExit.nextTowardSource(current);
+                }
+                state.moveTo(next);
+                sim.moveTo(next);
+                compare(state, sim);
+            }
+
+            for (int i = 0; i < forks.size(); i++) {
+                SimulatedEscapeState fork = forks.get(i);
+                int[] at = forkedAt.get(i);
+                check(fork.getCurrentNode().getId() == at[0] && fork.getTimeRemaining() == at[1]
+                        && fork.getGoldCollected() == at[2], "fork " + i + " left untouched");
+                walkFork(fork, sim);
+            }
+        }
+
+        /**
+         * Check that the live game state and the simulation sim agree.
+         */
+        private void compare(EscapeState state, SimulatedEscapeState sim) {
+            check(sim.getCurrentNode().getId() == state.getCurrentNode().getId()
+                    && sim.getTimeRemaining() == state.getTimeRemaining()
+                    && sim.getGoldCollected() == goldCollected,
+                    "position, time or gold after " + sim.getSteps() + " moves");
+        }
+
+        /**
+         * Walk fork at random, picking up gold, and check that original, from
+         * which it was forked, does not change.
+         */
+        private void walkFork(SimulatedEscapeState fork, SimulatedEscapeState original) {
+            long position = original.getCurrentNode().getId();
+            int time = original.getTimeRemaining();
+            int collected = original.getGoldCollected();
+            for (int k = 0; k < FORK_INTERVAL; k++) {
+                if (fork.getGold(fork.getCurrentNode()) > 0) {
+                    int before = original.getGold(fork.getCurrentNode());
+                    fork.pickUpGold();
+                    check(original.getGold(fork.getCurrentNode()) == before, "gold picked up in a fork");
+                }
+                int n = rand.nextInt(fork.getNeighbourCount());
+                if (fork.getEdgeLength(n) > fork.getTimeRemaining()) {
+                    break;
+                }
+                fork.moveTo(fork.getNeighbour(n));
+            }
+            check(original.getCurrentNode().getId() == position && original.getTimeRemaining() == time
+                    && original.getGoldCollected() == collected, "original left untouched by a fork");
+        }
+    }
+}
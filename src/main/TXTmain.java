@@ -1,8 +1,12 @@
 package main;
 
+import game.Budget;
+import game.CavernCorpus;
 import game.GameState;
+import game.Solver;
 
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -10,6 +14,10 @@ import java.util.Optional;
 
 /**
  * Runs the program via the text (console) interface.
+ * With -c file, runs the games of a corpus made by CorpusMain instead of
+ * generating new ones (all of them, or the first -n).
+ * -solver, -explore and -escape select the solver (see Utilities.parseSolverArgs),
+ * and -wall, -cpu and -moves limit each phase (see Utilities.parseBudgetArgs).
  */
 public class TXTmain {
     public static void main(String[] args) throws IOException {
@@ -24,11 +32,31 @@ public class TXTmain {
             }
         }
         Optional<Long> seed = Utilities.parseSeedArgs(args);
+        Solver solver = Utilities.parseSolverArgs(args);
+        Budget budget = Utilities.parseBudgetArgs(args);
+
+        if (argList.contains("-c")) {
+            String corpusPath = Utilities.argValue(argList, "-c", null);
+            if (corpusPath == null) {
+                System.err.println("Error, -c must be followed by a corpus file");
+                return;
+            }
+            try (CavernCorpus corpus = CavernCorpus.open(Paths.get(corpusPath))) {
+                int numGames = (repeatNumberIndex >= 0 ? Math.min(numTimesToRun, corpus.size()) : corpus.size());
+                int totalScore = 0;
+                for (int i = 0; i < numGames; i++) {
+                    totalScore += GameState.runNewGame(corpus, i, false, solver, budget);
+                    System.out.println();
+                }
+                if (totalScore != 0) System.out.println("Average score : " + totalScore / numGames);
+            }
+            return;
+        }
 
         int totalScore = 0;
 
         for (int i = 0; i < numTimesToRun; i++) {
-            totalScore += GameState.runNewGame((seed.isPresent() ? seed.get() : 0), false);
+            totalScore += GameState.runNewGame((seed.isPresent() ? seed.get() : 0), false, solver, budget);
             System.out.println();
         }
 
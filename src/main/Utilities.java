@@ -1,5 +1,9 @@
 package main;
 
+import game.Budget;
+import game.Solver;
+import game.Solvers;
+
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -24,4 +28,55 @@ public class Utilities {
         }
         return seed;
     }
+
+    /**
+     * Return the solver selected by the arguments: -solver name picks a solver
+     * (see Solvers.find), and -explore name or -escape name replace the strategy
+     * for one phase with that of another solver. Without any of them, return
+     * the default solver.
+     * Throw an IllegalArgumentException if a name does not refer to a solver.
+     */
+    static Solver parseSolverArgs(String... args) {
+        List<String> argList = new ArrayList<>(Arrays.asList(args));
+        Solver solver = Solvers.find(argValue(argList, "-solver", Solvers.DEFAULT));
+        String explore = argValue(argList, "-explore", null);
+        String escape = argValue(argList, "-escape", null);
+        if (explore == null && escape == null) {
+            return solver;
+        }
+        Solver explorer = (explore == null ? solver : Solvers.find(explore));
+        Solver escaper = (escape == null ? solver : Solvers.find(escape));
+        return Solvers.combine(explorer.getName() + "+" + escaper.getName(), explorer, escaper);
+    }
+
+    /**
+     * Return the budget for each phase selected by the arguments: -wall ms and
+     * -cpu ms limit its wall-clock and CPU time, and -moves n its number of moves.
+     * Limits that are not given, or cannot be parsed, are not applied.
+     */
+    static Budget parseBudgetArgs(String... args) {
+        List<String> argList = new ArrayList<>(Arrays.asList(args));
+        long wall = 0;
+        long cpu = 0;
+        int moves = 0;
+        try {
+            wall = Math.max(Long.parseLong(argValue(argList, "-wall", "0")), 0);
+            cpu = Math.max(Long.parseLong(argValue(argList, "-cpu", "0")), 0);
+            moves = Math.max(Integer.parseInt(argValue(argList, "-moves", "0")), 0);
+        } catch (NumberFormatException e) {
+            System.err.println("Error, -wall, -cpu and -moves must be followed by a number");
+        }
+        return new Budget(wall, cpu, moves);
+    }
+
+    /**
+     * Return the argument following option in argList, or otherwise if there is none.
+     */
+    static String argValue(List<String> argList, String option, String otherwise) {
+        int index = argList.indexOf(option);
+        if (index < 0 || index + 1 >= argList.size()) {
+            return otherwise;
+        }
+        return argList.get(index + 1);
+    }
 }
@@ -1,26 +1,43 @@
 package student;
 
-import game.Edge;
 import game.EscapeState;
+import game.EscapeStrategy;
 import game.ExplorationState;
+import game.ExploreStrategy;
 import game.Node;
 import game.NodeStatus;
+import game.ShortestPathOracle;
+import game.ShortestPathTree;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Set;
 
 /**
  * @author Jade Dickinson BBK-PiJ-2015-08
  */
-public class Explorer {
+public class Explorer implements ExploreStrategy, EscapeStrategy {
     /**
      * Used in comparison between time remaining and cost to the exit.
      */
     private static final int TIMECOMPARISON = 1369;
+    /**
+     * The plan for the current leg of the escape: the ids of the nodes to
+     * move to, in order (see planPath()). It has room for every node, so
+     * it is made once per escape.
+     */
+    private int[] path;
+    /**
+     * The nodes of the cavern, indexed by id, so that the plan can be
+     * followed without looking nodes up among their neighbours.
+     */
+    private Node[] nodes;
+    /**
+     * Shortest distances to the exit from every node, computed once per
+     * escape; used to check that each move still leaves time to get out.
+     */
+    private ShortestPathTree toExit;
     /**
      * Explore the cavern, trying to find the orb in as few steps as possible.
      * Once you find the orb, you must return from the function in order to pick
@@ -49,6 +66,7 @@ public class Explorer {
      *
      * @param state the information available at the current state
      */
+    @Override
     public void explore(ExplorationState state) {
         List<NodeStatus> visited = new ArrayList<>();
         greedy(state, visited, state.getCurrentLocation());
@@ -119,222 +137,127 @@ public class Explorer {
      * the starting position to the exit, although this will not collect much
      * gold.
      *
+     * This solution works in legs: it plans a path with planPath() to the
+     * highest gold if there is time to get there and then to the exit, and
+     * otherwise to the exit, then follows the plan, picking up gold on the
+     * way. It loops until it stands at the exit, so it needs no more stack
+     * for a long escape than for a short one. Before every move it checks
+     * that the move leaves enough time to reach the exit; if not, it heads
+     * straight for the exit instead (see headForExit()).
+     *
      * @param state the information available at the current state
      */
+    @Override
     public void escape(EscapeState state) {
-        Node startNode = state.getCurrentNode();
         final Node exitNode = state.getExit();
-        final Collection<Node> theGraph = state.getVertices();
-        seekGoldOrExit(state, theGraph, startNode, exitNode);
-        return;
-    }
-
-    /**
-     * seekGoldOrExit() goes for current highest gold tile, using dijkstra(),
-     * if time remains to treasure hunt. It recursively calls seekGoldOrExit();
-     * running out of time is the edge case and it can deal with this, as
-     * described below:
-     * When running out of time, seekGoldOrExit defaults to using dijkstra()
-     * to find the exit. It also recursively calls seekGoldOrExit().
-     *
-     * @param state the EscapeState we're working with
-     * @param theGraph the entire graph from using state.getVertices()
-     * @param startNode the start point for this use of seekGoldOrExit
-     * @param exitNode the final Node exitNode from escape()
-     */
-    private void seekGoldOrExit(EscapeState state,
-                                final Collection<Node> theGraph,
-                                Node startNode, Node exitNode) {
-        if (state.getCurrentNode().equals(exitNode)) {
-            return;
-        }
-        Node highest = null;
-        int currentHighest = 0;
-        for (Node n : theGraph) {
-            if (n.getTile().getGold() > currentHighest) {
-                highest = n;
-                    currentHighest = n.getTile().getGold();
-            }
+        toExit = state.getShortestPathTree(exitNode);
+        Collection<Node> vertices = state.getVertices();
+        nodes = new Node[vertices.size()];
+        for (Node n : vertices) {
+            nodes[(int) n.getId()] = n;
         }
-        int totalCosts = totalCosts(state.getCurrentNode(), highest,
-                exitNode, state);
-        //Time running out; move towards exit.
-        if (state.getTimeRemaining() - TIMECOMPARISON < totalCosts) {
-            final List<Node> escapeNow =
-                    dijkstra(state.getCurrentNode(), exitNode, state);
-            escapeNow.remove(0);
-            for (int i = 0; i < escapeNow.size(); i++) {
-                Node nxt = escapeNow.get(i);
-                escapeNow.remove(nxt);
-                if (state.getCurrentNode().equals(exitNode)) {
-                    return;
-                }
-                if (state.getCurrentNode().getTile().getGold() > 0) {
-                    state.pickUpGold();
-                }
-                state.moveTo(nxt);
-                seekGoldOrExit(state, theGraph, nxt, exitNode);
+        path = new int[vertices.size()];
+        while (!state.getCurrentNode().equals(exitNode)) {
+            Node current = state.getCurrentNode();
+            if (current.getTile().getGold() > 0) {
+                state.pickUpGold();
             }
-        } else {
-            //Time remains to treasure hunt; move towards highest gold.
-            List<Node> wayToHighest = dijkstra(startNode, highest, state);
-            wayToHighest.remove(0);
-            for (int i = 0; i < wayToHighest.size(); i++) {
-                Node nxt = wayToHighest.get(i);
-                wayToHighest.remove(nxt);
-                if (state.getCurrentNode().getTile().getGold() > 0) {
-                    state.pickUpGold();
-                }
-                state.moveTo(nxt);
-                seekGoldOrExit(state, theGraph, nxt, exitNode);
+            Node highest = state.getGoldIndex().getMax();
+            //Time running out (or no gold left); move towards exit.
+            if (highest == null || state.getTimeRemaining() - TIMECOMPARISON
+                    < totalCosts(current, highest, exitNode, state)) {
+                follow(state, planPath(current, exitNode, state));
+            } else {
+                //Time remains to treasure hunt; move towards highest gold.
+                follow(state, planPath(current, highest, state));
             }
         }
     }
 
     /**
-     * @param startNode the start point for this use of seekGoldOrExit
-     * @param highest The Node with the current highest gold (or pizza)
-     * @param exitNode The final Node exitNode from escape()
-     * @param state The EscapeState we are working with
-     * @return An integer representing the total cost of moving to the current
-     * highest gold and then moving to the exit.
-     */
-    private int totalCosts(Node startNode,
-                           Node highest, Node exitNode, EscapeState state) {
-        List<Node> checkWayTarget = dijkstra(startNode, highest, state);
-        List<Node> checkWayOut = dijkstra(highest, exitNode, state);
-        if (!checkWayOut.isEmpty()) {
-            checkWayOut.remove(0);
-        }
-        int costToTarget = 0;
-        int costTargetToExit = 0;
-        for (int i = 0; i + 1 < checkWayTarget.size(); i++) {
-            Edge checkLength =
-                    checkWayTarget.get(i).getEdge(checkWayTarget.get(i + 1));
-            costToTarget = costToTarget + checkLength.length;
-        }
-        for (int i = 0; i + 1 < checkWayOut.size(); i++) {
-            Edge checkLength =
-                    checkWayOut.get(i).getEdge(checkWayOut.get(i + 1));
-            costTargetToExit = costTargetToExit + checkLength.length;
-        }
-        return costToTarget + costTargetToExit;
-    }
-
-    /**
-     * @param startNode The Node we are using dijkstra() to seek a path from.
-     * @param end The Node we are using dijkstra() to seek a path to.
-     * @param state The EscapeState we are working with
-     * @return The path from startNode to end (our current target).
+     * Execute the plan in path[0..length-1]: move along it one node at a
+     * time, picking up any gold on each node before leaving it.
+     * Walking a shortest path towards the highest gold (or the exit) changes
+     * neither the cost of the rest of the trip nor which gold is highest,
+     * unless that gold is reached, so the plan need not be revised on the way.
+     *
+     * @param state the EscapeState we're working with
+     * @param length the number of moves planned in path
      */
-    private List<Node> dijkstra(Node startNode, Node end, EscapeState state) {
-        PriorityQueueImpl<Node> openList = new PriorityQueueImpl<>();
-        HashMap<Node, NodeData> nodeData = new HashMap<>();
-        openList.add(startNode, 0);
-        nodeData.put(startNode, new NodeData());
-        while (!openList.isEmpty() && openList.peek() != end) {
-            Node currentNode = openList.poll();
-            NodeData currentData = nodeData.get(currentNode);
-            if (state.getCurrentNode().equals(state.getExit())) {
-                return new ArrayList<>();
-            } else {
-                Set<Edge> escapeEdges = currentNode.getExits();
-                for (Edge ed : escapeEdges) {
-                    Node w = ed.getOther(currentNode);
-                    NodeData wData = nodeData.get(w);
-                    double wDistance = currentData.distance + ed.length;
-                    if (wData == null) {
-                        openList.add(w, wDistance);
-                        nodeData.put(w, new NodeData(currentNode, wDistance));
-                    } else {
-                        if (wDistance < wData.distance) {
-                            openList.updatePriority(w, wDistance);
-                            wData.distance = wDistance;
-                            wData.prev = currentNode;
-                        }
-                    }
-                }
+    private void follow(EscapeState state, int length) {
+        for (int cursor = 0; cursor < length; cursor++) {
+            Node current = state.getCurrentNode();
+            if (current.getTile().getGold() > 0) {
+                state.pickUpGold();
             }
-        }
-        if (openList.isEmpty()) {
-            while (!state.getCurrentNode().equals(state.getExit())) {
-                visitAnother(state);
+            Node nxt = nodes[path[cursor]];
+            if (state.getTimeRemaining() - current.getEdge(nxt).length
+                    < toExit.distanceTo(nxt)) {
+                headForExit(state);
+                return;
             }
-            //Return a dummy list, only used to return out of this method.
-            return new ArrayList<>();
-        } else {
-            return findWayOut(openList.peek(), nodeData);
+            state.moveTo(nxt);
         }
     }
 
     /**
-     * Used to handle some extreme edge cases; just moves to a random node.
-     * Called recursively by dijkstra() while current node isn't equal to exit.
+     * Go straight to the exit along a shortest path, picking up gold on the
+     * way. Each step is read off toExit, so this does no searching, and it
+     * always arrives in time: a shortest path to the exit is never longer
+     * than the time that follow() (and the game) guarantee is left.
      *
-     * @param state The EscapeState we're working with.
+     * @param state the EscapeState we're working with
      */
-    private void visitAnother(EscapeState state) {
-        Set<Node> edgesOut = state.getCurrentNode().getNeighbours();
-        if (edgesOut.contains(state.getExit())) {
-            if (state.getCurrentNode().getTile().getGold() > 0) {
+    private void headForExit(EscapeState state) {
+        while (!state.getCurrentNode().equals(state.getExit())) {
+            Node current = state.getCurrentNode();
+            if (current.getTile().getGold() > 0) {
                 state.pickUpGold();
             }
-            state.moveTo(state.getExit());
-        } else {
-            for (Node e : edgesOut) {
-                if (state.getCurrentNode().getTile().getGold() > 0) {
-                    state.pickUpGold();
-                }
-                state.moveTo(e);
-            }
+            state.moveTo(toExit.nextTowardSource(current));
         }
     }
 
     /**
-     * @param end The end of the path this method returns to dijkstra()
-     * @param nodeData Must contain information about the path
-     * @return The path from current node to target node (end or highest gold).
+     * @param startNode the start point for this leg of the escape
+     * @param highest The Node with the current highest gold (or pizza)
+     * @param exitNode The final Node exitNode from escape()
+     * @param state The EscapeState we are working with
+     * @return An integer representing the total cost of moving to the current
+     * highest gold and then moving to the exit.
      */
-    private List<Node> findWayOut(Node end, HashMap<Node, NodeData> nodeData) {
-        List<Node> wayOut = new ArrayList<>();
-        Node n = end;
-        while (n != null) {
-            wayOut.add(n);
-            n = nodeData.get(n).prev;
+    private int totalCosts(Node startNode,
+                           Node highest, Node exitNode, EscapeState state) {
+        ShortestPathOracle oracle = state.getShortestPathOracle();
+        int costToTarget = oracle.distance(startNode, highest);
+        int costTargetToExit = oracle.distance(highest, exitNode);
+        if (costToTarget == ShortestPathTree.UNREACHABLE
+                || costTargetToExit == ShortestPathTree.UNREACHABLE) {
+            return ShortestPathTree.UNREACHABLE;
         }
-        Collections.reverse(wayOut);
-        return wayOut;
+        return costToTarget + costTargetToExit;
     }
 
     /**
-     * A NodeData object holds information about a node, that being the previous
-     * node on a path to it, and the distance from the start node in the path to
-     * this node.
+     * Plan a shortest path from startNode to end, as given by the cavern's
+     * shortest-path oracle: store the ids of the nodes after startNode on it,
+     * up to and including end, in path. The oracle writes them straight into
+     * path, so planning a leg allocates nothing.
+     * If end cannot be reached, head for the exit instead (see headForExit()).
+     *
+     * @param startNode The Node we are seeking a path from.
+     * @param end The Node we are seeking a path to.
+     * @param state The EscapeState we are working with
+     * @return The number of moves on the path stored in path.
      */
-    private static final class NodeData {
-        /**
-         * prev Holds the previous node on a path to this node.
-         */
-        private Node prev;
-        /**
-         * Distance holds distance in path from start node to this node.
-         */
-        private double distance;
-
-        /**
-         * @param n The previous node.
-         * @param dist The distance from the previous to this node.
-         */
-        private NodeData(Node n, double dist) {
-            this.prev = n;
-            this.distance = dist;
-        }
-
-        /**
-         * Default constructor with no parameters.
-         */
-        private NodeData() {
+    private int planPath(Node startNode, Node end, EscapeState state) {
+        int length = state.getShortestPathOracle().path(startNode, end, path);
+        if (length < 0) {
+            //end cannot be reached: get out while there is time.
+            headForExit(state);
+            return 0;
         }
+        return length;
     }
 
 }
@@ -0,0 +1,25 @@
+package student;
+
+import game.EscapeStrategy;
+import game.ExploreStrategy;
+import game.Solver;
+
+/**
+ * The solver that uses Explorer for both phases of the game.
+ */
+public class ExplorerSolver implements Solver {
+    @Override
+    public String getName() {
+        return "explorer";
+    }
+
+    @Override
+    public ExploreStrategy newExploreStrategy() {
+        return new Explorer();
+    }
+
+    @Override
+    public EscapeStrategy newEscapeStrategy() {
+        return new Explorer();
+    }
+}
@@ -0,0 +1,35 @@
+package student;
+
+import game.ExplorationState;
+import game.ExploreStrategy;
+import game.KnownMap;
+
+/**
+ * An explore strategy that remembers what it has seen in a KnownMap.
+ * <p>
+ * At each decision the explorer picks the frontier node with the smallest
+ * estimated total cost: the length of the shortest path to it through visited
+ * nodes plus its grid distance to the orb. It then walks that path, so leaving
+ * a dead end takes the shortest known way out instead of retracing every step
+ * into it.
+ */
+public class FrontierExplorer implements ExploreStrategy {
+    /**
+     * Explore the cavern until standing on the orb, as described in Explorer.explore.
+     */
+    @Override
+    public void explore(ExplorationState state) {
+        KnownMap map = new KnownMap(1024);
+        int current = map.visit(state.getCurrentLocation(), state.getDistanceToTarget(), state.getNeighbours());
+        while (map.distanceToTarget(current) != 0) {
+            int target = map.bestFrontier(current, 1, 1);
+            if (target == KnownMap.ABSENT) {
+                throw new IllegalStateException("explore: the orb cannot be reached");
+            }
+            for (long id : map.pathTo(target)) {
+                state.moveTo(id);
+            }
+            current = map.visit(state.getCurrentLocation(), state.getDistanceToTarget(), state.getNeighbours());
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package student;
+
+import game.EscapeStrategy;
+import game.ExploreStrategy;
+import game.Solver;
+
+/**
+ * The solver that explores with FrontierExplorer and escapes with Explorer.
+ */
+public class FrontierSolver implements Solver {
+    @Override
+    public String getName() {
+        return "frontier";
+    }
+
+    @Override
+    public ExploreStrategy newExploreStrategy() {
+        return new FrontierExplorer();
+    }
+
+    @Override
+    public EscapeStrategy newEscapeStrategy() {
+        return new Explorer();
+    }
+}